@@ -0,0 +1,29 @@
+package vn.vnpay.fee.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH suites with the usual JMH command line, always adding the GC profiler so every result
+ * reports the allocation rate next to the throughput. Run it from the project root, the benchmarks
+ * read src/main/resources/config.properties like the service does.
+ */
+public class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                // a fixed node id instead of a redis lease, no file watcher and no log files
+                .jvmArgsAppend("-Dsnowflake.nodeId=0", "-Dconfig.reload.enabled=false",
+                        "-Dfee.init.async.enabled=false", "-Dlogback.configurationFile=logback-benchmark.xml")
+                .build();
+        new Runner(options).run();
+    }
+}
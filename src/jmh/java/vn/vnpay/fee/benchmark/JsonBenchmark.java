@@ -0,0 +1,80 @@
+package vn.vnpay.fee.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vn.vnpay.fee.common.CommonUtil;
+import vn.vnpay.fee.common.GeneralResponse;
+import vn.vnpay.fee.common.HttpStatus;
+import vn.vnpay.fee.handle.FeeCommandRequest;
+import vn.vnpay.fee.handle.ResponseWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson round trips of the request and response bodies, next to the pre-encoded response writer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    private static final TypeReference<GeneralResponse<String>> RESPONSE_TYPE =
+            new TypeReference<GeneralResponse<String>>() {
+            };
+    private FeeCommandRequest feeCommandRequest;
+    private byte[] feeCommandRequestBytes;
+    private GeneralResponse<String> generalResponse;
+    private byte[] generalResponseBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        feeCommandRequestBytes = ("{\"requestId\":\"a3f1c2d4-0001\",\"requestTime\":\"20240101120000\","
+                + "\"commandCode\":\"1786543210987654321\",\"totalRecord\":1000,\"totalFee\":150000.0,"
+                + "\"createdUser\":\"admin\",\"createdDate\":\"20240101120000\"}").getBytes(StandardCharsets.UTF_8);
+        feeCommandRequest = CommonUtil.bytesToObject(feeCommandRequestBytes, FeeCommandRequest.class);
+        generalResponse = new GeneralResponse<>();
+        generalResponse.setCode(HttpStatus.SUCCESS.getMessageStatus());
+        generalResponse.setMessage(HttpStatus.SUCCESS.getMessage());
+        generalResponse.setData("1786543210987654321");
+        generalResponseBytes = CommonUtil.objectToBytes(generalResponse);
+    }
+
+    @Benchmark
+    public FeeCommandRequest readFeeCommandRequest() throws IOException {
+        return CommonUtil.bytesToObject(feeCommandRequestBytes, FeeCommandRequest.class);
+    }
+
+    @Benchmark
+    public String writeFeeCommandRequest() throws IOException {
+        return CommonUtil.objectToJson(feeCommandRequest);
+    }
+
+    @Benchmark
+    public GeneralResponse<String> readGeneralResponse() throws IOException {
+        return CommonUtil.bytesToObject(generalResponseBytes, RESPONSE_TYPE);
+    }
+
+    @Benchmark
+    public String writeGeneralResponse() throws IOException {
+        return CommonUtil.objectToJson(generalResponse);
+    }
+
+    @Benchmark
+    public byte[] writeGeneralResponseTemplate() throws IOException {
+        return ResponseWriter.toBytes(HttpStatus.SUCCESS, generalResponse.getData());
+    }
+}
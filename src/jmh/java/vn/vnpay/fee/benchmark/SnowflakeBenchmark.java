@@ -0,0 +1,55 @@
+package vn.vnpay.fee.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import vn.vnpay.fee.common.IdRange;
+import vn.vnpay.fee.common.Snowflake;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Id generation from one shared generator. Callers never wait: past 4096 ids per millisecond the ids
+ * run ahead of the clock, so the contended runs measure the CAS on the shared slot alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnowflakeBenchmark {
+
+    private final Snowflake snowflake = new Snowflake(6, 0);
+
+    @Benchmark
+    @Threads(1)
+    public long nextIdOneThread() {
+        return snowflake.nextId();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long nextIdFourThreads() {
+        return snowflake.nextId();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long nextIdAllThreads() {
+        return snowflake.nextId();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public IdRange nextIdsOfThousand() {
+        return snowflake.nextIds(1000);
+    }
+}
@@ -0,0 +1,56 @@
+package vn.vnpay.fee.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vn.vnpay.fee.common.CommonUtil;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request time validation and the idempotency ttl, both expected to allocate nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimeBenchmark {
+
+    private static final DateTimeFormatter REQUEST_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private String currentRequestTime;
+    private String expiredRequestTime;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        LocalDateTime now = LocalDateTime.now();
+        currentRequestTime = now.format(REQUEST_TIME_FORMAT);
+        expiredRequestTime = now.minusHours(1).format(REQUEST_TIME_FORMAT);
+    }
+
+    @Benchmark
+    public boolean isExpiredCurrent() {
+        return CommonUtil.isExpired(currentRequestTime);
+    }
+
+    @Benchmark
+    public boolean isExpiredOld() {
+        return CommonUtil.isExpired(expiredRequestTime);
+    }
+
+    @Benchmark
+    public long processTimeToLife() {
+        return CommonUtil.processTimeToLife();
+    }
+}
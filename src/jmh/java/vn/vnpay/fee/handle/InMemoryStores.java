@@ -0,0 +1,78 @@
+package vn.vnpay.fee.handle;
+
+import vn.vnpay.fee.bean.FeeCommand;
+import vn.vnpay.fee.common.CommonUtil;
+import vn.vnpay.fee.service.IdempotencyStore;
+import vn.vnpay.fee.service.TransactionService;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stand-ins for the database and redis backed stores, so a benchmark measures the handler alone.
+ */
+public class InMemoryStores {
+
+    private InMemoryStores() {
+    }
+
+    /**
+     * @return a handler that accepts every request without reaching the database or redis
+     */
+    public static RequestHandler newRequestHandler() {
+        return new RequestHandler(new AcceptingTransactionService(), new AcceptingIdempotencyStore());
+    }
+
+    /**
+     * Accepts every command and gives it a code, as a successful insert would.
+     */
+    static class AcceptingTransactionService implements TransactionService {
+
+        @Override
+        public boolean initFeeCommand(FeeCommand feeCommand) {
+            feeCommand.setCommandCode(CommonUtil.getNextId());
+            return true;
+        }
+
+        @Override
+        public boolean initFeeCommands(List<FeeCommand> feeCommands) {
+            for (FeeCommand feeCommand : feeCommands) {
+                feeCommand.setCommandCode(CommonUtil.getNextId());
+            }
+            return true;
+        }
+
+        @Override
+        public int updateFee(long commandCode) {
+            return 1;
+        }
+
+        @Override
+        public int scanFee() {
+            return 0;
+        }
+
+        @Override
+        public boolean isFeeCommandPersisted(long commandCode) {
+            return true;
+        }
+    }
+
+    /**
+     * Reserves every id, so the same request body can be sent again and again.
+     */
+    static class AcceptingIdempotencyStore implements IdempotencyStore {
+
+        @Override
+        public boolean reserve(String requestId) {
+            return true;
+        }
+
+        @Override
+        public boolean[] reserveAll(List<String> requestIds) {
+            boolean[] reserved = new boolean[requestIds.size()];
+            Arrays.fill(reserved, true);
+            return reserved;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package vn.vnpay.fee.handle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vn.vnpay.fee.common.Readiness;
+import vn.vnpay.fee.config.node.NodeIdConfig;
+import vn.vnpay.fee.config.reload.ConfigWatcher;
+import vn.vnpay.fee.job.FeeCommandPipeline;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole requests through {@link RequestHandler#handle}, from reading the body to writing the response,
+ * against in-memory stores. Covers parsing, validation, id generation, logging and response encoding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestHandlerBenchmark {
+
+    private static final DateTimeFormatter REQUEST_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final int BATCH_SIZE = 10;
+    private RequestHandler requestHandler;
+    private InMemoryHttpExchange initExchange;
+    private InMemoryHttpExchange batchInitExchange;
+    private InMemoryHttpExchange updateExchange;
+
+    @Setup
+    public void setUp() throws IllegalAccessException, IOException {
+        ConfigWatcher.initConfigWatcher();
+        NodeIdConfig.initNodeId();
+        FeeCommandPipeline.initFeeCommandPipeline();
+        Readiness.markReady();
+        requestHandler = new RequestHandler(new InMemoryStores.AcceptingTransactionService(),
+                new InMemoryStores.AcceptingIdempotencyStore());
+        initExchange = new InMemoryHttpExchange("POST", "/init");
+        batchInitExchange = new InMemoryHttpExchange("POST", "/init/batch");
+        updateExchange = new InMemoryHttpExchange("PUT", "/update");
+    }
+
+    /**
+     * Request times are only valid for 10 minutes, so the bodies are built again for every iteration.
+     */
+    @Setup(Level.Iteration)
+    public void setUpBodies() {
+        String requestTime = LocalDateTime.now().format(REQUEST_TIME_FORMAT);
+        initExchange.setRequestBody(body(feeCommand("init", requestTime)));
+        StringBuilder batch = new StringBuilder("[");
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.append(i == 0 ? "" : ",").append(feeCommand("batch-" + i, requestTime));
+        }
+        batchInitExchange.setRequestBody(body(batch.append(']').toString()));
+        updateExchange.setRequestBody(body(feeCommand("update", requestTime)));
+        for (InMemoryHttpExchange exchange : new InMemoryHttpExchange[]{initExchange, batchInitExchange, updateExchange}) {
+            int responseCode = this.handle(exchange);
+            if (responseCode != 200) {
+                throw new IllegalStateException(exchange.getRequestURI() + " answers " + responseCode
+                        + ", the benchmark would not measure the success path");
+            }
+        }
+    }
+
+    @Benchmark
+    public int init() {
+        return this.handle(initExchange);
+    }
+
+    @Benchmark
+    public int batchInit() {
+        return this.handle(batchInitExchange);
+    }
+
+    @Benchmark
+    public int update() {
+        return this.handle(updateExchange);
+    }
+
+    private int handle(InMemoryHttpExchange exchange) {
+        exchange.reset();
+        requestHandler.handle(exchange);
+        return exchange.getResponseCode();
+    }
+
+    private static String feeCommand(String requestId, String requestTime) {
+        return "{\"requestId\":\"" + requestId + "\",\"requestTime\":\"" + requestTime + "\","
+                + "\"commandCode\":\"1786543210987654321\",\"totalRecord\":1000,\"totalFee\":150000.0,"
+                + "\"createdUser\":\"admin\",\"createdDate\":\"" + requestTime + "\"}";
+    }
+
+    private static byte[] body(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,30 @@
+package vn.vnpay.fee.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The latest command codes returned by POST /init, so PUT /update targets commands that exist.
+ */
+class CommandCodePool {
+
+    private static final int CAPACITY = 4096;
+    private final AtomicReferenceArray<String> commandCodes = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicLong added = new AtomicLong();
+
+    void add(String commandCode) {
+        commandCodes.set((int) (added.getAndIncrement() % CAPACITY), commandCode);
+    }
+
+    /**
+     * @return a random recent command code, null while no command was created
+     */
+    String pick() {
+        long size = Math.min(added.get(), CAPACITY);
+        if (size == 0) {
+            return null;
+        }
+        return commandCodes.get(ThreadLocalRandom.current().nextInt((int) size));
+    }
+}
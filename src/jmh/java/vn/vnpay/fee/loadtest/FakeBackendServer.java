@@ -0,0 +1,48 @@
+package vn.vnpay.fee.loadtest;
+
+import vn.vnpay.fee.common.PropertiesFactory;
+import vn.vnpay.fee.common.Readiness;
+import vn.vnpay.fee.config.logging.LoggingConfig;
+import vn.vnpay.fee.config.node.NodeIdConfig;
+import vn.vnpay.fee.config.reload.ConfigWatcher;
+import vn.vnpay.fee.controller.AdmissionController;
+import vn.vnpay.fee.controller.FeeController;
+import vn.vnpay.fee.handle.InMemoryStores;
+import vn.vnpay.fee.job.FeeCommandPipeline;
+
+import java.util.Arrays;
+
+/**
+ * Starts the service in this JVM as {@code Main} does, with the configured server, admission control
+ * and logging, but on in-memory stores, so a run measures the server and not the database or redis.
+ */
+class FakeBackendServer {
+
+    private FakeBackendServer() {
+    }
+
+    /**
+     * Must run before anything reads the config, the overrides are applied when the file is first read.
+     *
+     * @return the base url of the started server
+     */
+    static String start() throws Exception {
+        // a fixed node id instead of a redis lease, and POST /init answered inline since the
+        // asynchronous pipeline persists through the real database
+        if (System.getProperty("snowflake.nodeId") == null) {
+            System.setProperty("snowflake.nodeId", "0");
+        }
+        System.setProperty("fee.init.async.enabled", "false");
+        // the JDK server writes headers and body apart, Nagle would hold the body for the delayed ack
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        ConfigWatcher.initConfigWatcher();
+        LoggingConfig.initLogging();
+        NodeIdConfig.initNodeId();
+        AdmissionController.initAdmissionController();
+        FeeCommandPipeline.initFeeCommandPipeline();
+        FeeController feeController = new FeeController(InMemoryStores.newRequestHandler());
+        feeController.start(Arrays.asList("/init", "/init/batch", "/update", "/ready"));
+        Readiness.markReady();
+        return "http://localhost:" + PropertiesFactory.getFromProperties("server.port");
+    }
+}
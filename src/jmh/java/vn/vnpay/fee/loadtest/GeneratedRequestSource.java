@@ -0,0 +1,36 @@
+package vn.vnpay.fee.loadtest;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Mix of POST /init and PUT /update, updates are sent once an init returned a command code.
+ */
+class GeneratedRequestSource implements RequestSource {
+
+    private final double updateRatio;
+    private final CommandCodePool commandCodePool;
+    private final LoadRequest init;
+    private final LoadRequest update;
+
+    GeneratedRequestSource(double updateRatio, int totalRecord, CommandCodePool commandCodePool) {
+        this.updateRatio = updateRatio;
+        this.commandCodePool = commandCodePool;
+        ObjectNode body = JsonNodeFactory.instance.objectNode();
+        body.put("totalRecord", totalRecord);
+        body.put("totalFee", totalRecord * 150.0);
+        body.put("createdUser", "loadtest");
+        this.init = new LoadRequest("POST", LoadRequest.INIT_PATH, body);
+        this.update = new LoadRequest("PUT", LoadRequest.UPDATE_PATH, body);
+    }
+
+    @Override
+    public LoadRequest next() {
+        if (ThreadLocalRandom.current().nextDouble() < updateRatio && commandCodePool.pick() != null) {
+            return update;
+        }
+        return init;
+    }
+}
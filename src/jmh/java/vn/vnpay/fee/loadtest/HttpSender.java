@@ -0,0 +1,149 @@
+package vn.vnpay.fee.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends one request over a kept-alive connection and records its answer. Every request gets a requestId
+ * never used before and the current requestTime, so the server neither refuses it as a duplicate nor
+ * as expired.
+ */
+class HttpSender {
+
+    private static final DateTimeFormatter REQUEST_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final String SUCCESS_CODE = "00";
+    private final String target;
+    private final int timeoutMillis;
+    private final ObjectMapper objectMapper;
+    private final CommandCodePool commandCodePool;
+    private final LatencyRecorder latencyRecorder;
+    private final String requestIdPrefix = "lt-" + Long.toString(System.currentTimeMillis(), 36) + "-";
+    private final AtomicLong requestIdSequence = new AtomicLong();
+
+    HttpSender(String target, int timeoutMillis, ObjectMapper objectMapper, CommandCodePool commandCodePool,
+               LatencyRecorder latencyRecorder) {
+        this.target = target;
+        this.timeoutMillis = timeoutMillis;
+        this.objectMapper = objectMapper;
+        this.commandCodePool = commandCodePool;
+        this.latencyRecorder = latencyRecorder;
+    }
+
+    /**
+     * @return the HTTP status of a GET, used to check the target before the run
+     */
+    int get(String path) throws IOException {
+        HttpURLConnection connection = this.open("GET", path);
+        int responseCode = connection.getResponseCode();
+        readFully(responseCode >= 400 ? connection.getErrorStream() : connection.getInputStream());
+        return responseCode;
+    }
+
+    void send(LoadRequest request, long intendedStartNanos) {
+        long sendStartNanos = System.nanoTime();
+        try {
+            byte[] body = this.createBody(request);
+            HttpURLConnection connection = this.open(request.getMethod(), request.getPath());
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                try (OutputStream output = connection.getOutputStream()) {
+                    output.write(body);
+                }
+            }
+            int responseCode = connection.getResponseCode();
+            byte[] response = readFully(responseCode >= 400 ? connection.getErrorStream() : connection.getInputStream());
+            long endNanos = System.nanoTime();
+            latencyRecorder.recordAnswer(intendedStartNanos, sendStartNanos, endNanos,
+                    this.describe(request, responseCode, response));
+        } catch (IOException | RuntimeException e) {
+            latencyRecorder.recordError(intendedStartNanos, sendStartNanos, System.nanoTime(),
+                    "error " + request.getMethod() + " " + request.getPath() + " " + e.getClass().getSimpleName());
+        }
+    }
+
+    private HttpURLConnection open(String method, String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(target + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        return connection;
+    }
+
+    private byte[] createBody(LoadRequest request) throws IOException {
+        if (request.getBody() == null) {
+            return null;
+        }
+        JsonNode body = request.getBody().deepCopy();
+        String requestTime = LocalDateTime.now().format(REQUEST_TIME_FORMAT);
+        if (body.isArray()) {
+            for (JsonNode item : body) {
+                this.stamp(item, requestTime, request);
+            }
+        } else {
+            this.stamp(body, requestTime, request);
+        }
+        return objectMapper.writeValueAsBytes(body);
+    }
+
+    private void stamp(JsonNode node, String requestTime, LoadRequest request) {
+        if (!node.isObject()) {
+            return;
+        }
+        ObjectNode item = (ObjectNode) node;
+        item.put("requestId", requestIdPrefix + requestIdSequence.incrementAndGet());
+        item.put("requestTime", requestTime);
+        if (request.isUpdate() && item.path("commandCode").asText().isEmpty()) {
+            String commandCode = commandCodePool.pick();
+            if (commandCode != null) {
+                item.put("commandCode", commandCode);
+            }
+        }
+    }
+
+    /**
+     * @return the HTTP status and the message of the response, e.g. "200 Request is duplicated"
+     */
+    private String describe(LoadRequest request, int responseCode, byte[] response) {
+        String message = "";
+        try {
+            JsonNode node = objectMapper.readTree(response);
+            if (node != null) {
+                message = node.path("message").asText();
+                if (request.isInit() && SUCCESS_CODE.equals(node.path("code").asText())
+                        && node.path("data").isTextual()) {
+                    commandCodePool.add(node.get("data").asText());
+                }
+            }
+        } catch (IOException e) {
+            message = "unreadable body";
+        }
+        return responseCode + " " + request.getMethod() + " " + request.getPath() + " " + message;
+    }
+
+    private static byte[] readFully(InputStream input) throws IOException {
+        if (input == null) {
+            return new byte[0];
+        }
+        try (InputStream stream = input) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(256);
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package vn.vnpay.fee.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies in microseconds of every scheduled request. The latency of a request runs from the time the
+ * schedule meant to send it, so a stalled server is charged for the requests it kept waiting instead of
+ * only for the ones it was slow to answer (coordinated omission). The time from the actual send is kept
+ * apart as the service time. A failed request counts until it failed and a request never sent until the
+ * run gave up on it, so the worst samples stay in the percentiles. Requests scheduled during the warm-up
+ * are only shown in the progress.
+ */
+class LatencyRecorder {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+    private final long measureStartNanos;
+    private final long measureEndNanos;
+    private final Recorder interval = new Recorder(3);
+    private final Histogram latency = new ConcurrentHistogram(3);
+    private final Histogram serviceTime = new ConcurrentHistogram(3);
+    private final Map<String, LongAdder> responses = new ConcurrentHashMap<>();
+    private final LongAdder answered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAccumulator lastAnswerNanos = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+    LatencyRecorder(long measureStartNanos, long measureEndNanos) {
+        this.measureStartNanos = measureStartNanos;
+        this.measureEndNanos = measureEndNanos;
+    }
+
+    boolean isMeasured(long intendedStartNanos) {
+        return intendedStartNanos >= measureStartNanos && intendedStartNanos < measureEndNanos;
+    }
+
+    void recordAnswer(long intendedStartNanos, long sendStartNanos, long endNanos, String response) {
+        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(endNanos - intendedStartNanos);
+        interval.recordValue(latencyMicros);
+        if (!this.isMeasured(intendedStartNanos)) {
+            return;
+        }
+        latency.recordValue(latencyMicros);
+        serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(endNanos - sendStartNanos));
+        answered.increment();
+        lastAnswerNanos.accumulate(endNanos);
+        this.count(response);
+    }
+
+    void recordError(long intendedStartNanos, long sendStartNanos, long endNanos, String error) {
+        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(endNanos - intendedStartNanos);
+        interval.recordValue(latencyMicros);
+        if (!this.isMeasured(intendedStartNanos)) {
+            return;
+        }
+        latency.recordValue(latencyMicros);
+        serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(endNanos - sendStartNanos));
+        failed.increment();
+        this.count(error);
+    }
+
+    /**
+     * Counts a request still queued when the run gave up, with the latency it had reached by then.
+     */
+    void recordNotSent(long intendedStartNanos, long giveUpNanos) {
+        if (this.isMeasured(intendedStartNanos)) {
+            latency.recordValue(TimeUnit.NANOSECONDS.toMicros(giveUpNanos - intendedStartNanos));
+            this.count("not sent before the drain timeout");
+        }
+    }
+
+    private void count(String response) {
+        responses.computeIfAbsent(response, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Prints the requests answered since the previous call, warm-up included.
+     */
+    void printProgress(PrintStream out, long nowNanos, long startNanos, int queued) {
+        Histogram histogram = interval.getIntervalHistogram();
+        String phase = nowNanos < measureStartNanos ? "warm-up" : "measure";
+        out.printf("%5d s %-8s %8d answered  p50 %9.3f  p99 %9.3f  max %9.3f ms  %d queued%n",
+                TimeUnit.NANOSECONDS.toSeconds(nowNanos - startNanos), phase, histogram.getTotalCount(),
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getMaxValue()), queued);
+    }
+
+    void printSummary(PrintStream out, long scheduled, int notSent) {
+        long answeredCount = answered.sum();
+        double seconds = answeredCount == 0 ? 0 : (lastAnswerNanos.get() - measureStartNanos) / 1e9;
+        out.println();
+        out.printf("Scheduled %d, answered %d, failed %d, not sent before the drain timeout %d%n", scheduled,
+                answeredCount, failed.sum(), notSent);
+        out.printf("Throughput %.1f requests/s over %.1f s%n", seconds == 0 ? 0 : answeredCount / seconds, seconds);
+        out.println("Responses:");
+        new TreeMap<>(responses).forEach((response, count) -> out.printf("  %-40s %d%n", response, count.sum()));
+        printPercentiles(out, "Latency from the scheduled send of every request, corrected for coordinated "
+                + "omission (ms):", latency);
+        printPercentiles(out, "Service time from the actual send of answered and failed requests (ms):",
+                serviceTime);
+    }
+
+    Histogram getLatency() {
+        return latency;
+    }
+
+    private static void printPercentiles(PrintStream out, String title, Histogram histogram) {
+        out.println(title);
+        StringBuilder line = new StringBuilder();
+        for (double percentile : PERCENTILES) {
+            line.append(String.format("  p%s %.3f", percentile % 1 == 0 ? String.valueOf((int) percentile)
+                    : String.valueOf(percentile), millis(histogram.getValueAtPercentile(percentile))));
+        }
+        line.append(String.format("  max %.3f", millis(histogram.getMaxValue())));
+        out.println(line);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,140 @@
+package vn.vnpay.fee.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load test of the HTTP API. Requests are scheduled at a fixed rate and sent on schedule
+ * however long the previous ones take, waiting in a queue when every connection is busy, so the
+ * reported latency is what clients arriving at that rate would see. Run it from the project root:
+ * <pre>
+ * java -cp target/benchmarks.jar vn.vnpay.fee.loadtest.LoadGenerator --fake --rate=5000 --duration=30
+ * </pre>
+ */
+public class LoadGenerator {
+
+    private static final String READY_PATH = "/ready";
+    private static final PrintStream OUT = System.out;
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = new LoadTestOptions(args);
+        if (options.isHelp()) {
+            OUT.println(LoadTestOptions.USAGE);
+            return;
+        }
+        // keep a connection per sender instead of the default 5, and never resend a POST on a broken one
+        System.setProperty("http.maxConnections", String.valueOf(options.getConnections()));
+        System.setProperty("sun.net.http.retryPost", "false");
+        String target = options.isFake() ? FakeBackendServer.start() : options.getTarget();
+        ObjectMapper objectMapper = new ObjectMapper();
+        CommandCodePool commandCodePool = new CommandCodePool();
+        RequestSource requestSource = createRequestSource(options, objectMapper, commandCodePool);
+
+        long startNanos = System.nanoTime();
+        long measureStartNanos = startNanos + TimeUnit.SECONDS.toNanos(options.getWarmupSeconds());
+        long measureEndNanos = measureStartNanos + TimeUnit.SECONDS.toNanos(options.getDurationSeconds());
+        LatencyRecorder latencyRecorder = new LatencyRecorder(measureStartNanos, measureEndNanos);
+        HttpSender httpSender = new HttpSender(target, options.getTimeoutMillis(), objectMapper, commandCodePool,
+                latencyRecorder);
+        int readyStatus = httpSender.get(READY_PATH);
+        if (readyStatus != 200) {
+            throw new IllegalStateException(target + READY_PATH + " answers " + readyStatus);
+        }
+        OUT.printf("Load test of %s at %d requests/s for %d s after %d s warm-up on %d connections%n", target,
+                options.getRate(), options.getDurationSeconds(), options.getWarmupSeconds(),
+                options.getConnections());
+
+        ThreadPoolExecutor senders = new ThreadPoolExecutor(options.getConnections(), options.getConnections(),
+                0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor();
+        progress.scheduleAtFixedRate(() -> latencyRecorder.printProgress(OUT, System.nanoTime(), startNanos,
+                senders.getQueue().size()), 1, 1, TimeUnit.SECONDS);
+        long scheduled = 0;
+        long sent = 0;
+        while (true) {
+            // from the count instead of adding an interval, so rounding does not drift the rate
+            long intendedStartNanos = startNanos + sent * TimeUnit.SECONDS.toNanos(1) / options.getRate();
+            if (intendedStartNanos >= measureEndNanos) {
+                break;
+            }
+            long waitNanos = intendedStartNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                LockSupport.parkNanos(waitNanos);
+                continue;
+            }
+            senders.execute(new SendTask(httpSender, requestSource.next(), intendedStartNanos));
+            sent++;
+            if (latencyRecorder.isMeasured(intendedStartNanos)) {
+                scheduled++;
+            }
+        }
+        senders.shutdown();
+        senders.awaitTermination(options.getDrainSeconds(), TimeUnit.SECONDS);
+        List<Runnable> notSent = senders.shutdownNow();
+        long giveUpNanos = System.nanoTime();
+        for (Runnable task : notSent) {
+            latencyRecorder.recordNotSent(((SendTask) task).intendedStartNanos, giveUpNanos);
+        }
+        // requests in flight at the drain deadline end within their timeout and are recorded then
+        senders.awaitTermination(options.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+        progress.shutdownNow();
+
+        latencyRecorder.printSummary(OUT, scheduled, notSent.size());
+        if (options.getHistogram() != null) {
+            writeHistogram(latencyRecorder, options.getHistogram());
+        }
+        if (options.isFake()) {
+            System.exit(0);
+        }
+    }
+
+    private static RequestSource createRequestSource(LoadTestOptions options, ObjectMapper objectMapper,
+                                                     CommandCodePool commandCodePool) throws IOException {
+        if (options.getReplay() == null) {
+            return new GeneratedRequestSource(options.getUpdateRatio(), options.getTotalRecord(), commandCodePool);
+        }
+        ReplayRequestSource replayRequestSource = ReplayRequestSource.read(options.getReplay(), objectMapper);
+        OUT.printf("Replay %d requests of %s%n", replayRequestSource.size(), options.getReplay());
+        return replayRequestSource;
+    }
+
+    /**
+     * Writes the percentile distribution in the HdrHistogram text format, values in milliseconds.
+     */
+    private static void writeHistogram(LatencyRecorder latencyRecorder, String file) throws IOException {
+        try (PrintStream output = new PrintStream(new FileOutputStream(file), false, "UTF-8")) {
+            latencyRecorder.getLatency().outputPercentileDistribution(output, 1000.0);
+        }
+        OUT.printf("Latency distribution written to %s%n", file);
+    }
+
+    private static class SendTask implements Runnable {
+        private final HttpSender httpSender;
+        private final LoadRequest request;
+        private final long intendedStartNanos;
+
+        SendTask(HttpSender httpSender, LoadRequest request, long intendedStartNanos) {
+            this.httpSender = httpSender;
+            this.request = request;
+            this.intendedStartNanos = intendedStartNanos;
+        }
+
+        @Override
+        public void run() {
+            httpSender.send(request, intendedStartNanos);
+        }
+    }
+}
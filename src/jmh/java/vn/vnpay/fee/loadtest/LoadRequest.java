@@ -0,0 +1,43 @@
+package vn.vnpay.fee.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * One request to send: its method, path and a body template that gets a fresh requestId and
+ * requestTime when it is sent.
+ */
+class LoadRequest {
+
+    static final String INIT_PATH = "/init";
+    static final String BATCH_INIT_PATH = "/init/batch";
+    static final String UPDATE_PATH = "/update";
+    private final String method;
+    private final String path;
+    private final JsonNode body;
+
+    LoadRequest(String method, String path, JsonNode body) {
+        this.method = method;
+        this.path = path;
+        this.body = body;
+    }
+
+    String getMethod() {
+        return method;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    JsonNode getBody() {
+        return body;
+    }
+
+    boolean isInit() {
+        return INIT_PATH.equals(path);
+    }
+
+    boolean isUpdate() {
+        return UPDATE_PATH.equals(path);
+    }
+}
@@ -0,0 +1,109 @@
+package vn.vnpay.fee.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line of the load generator, every option is written {@code --name=value}.
+ */
+class LoadTestOptions {
+
+    static final String USAGE = "Options (--name=value):\n"
+            + "  --target=http://localhost:8080  server under test, ignored with --fake\n"
+            + "  --fake                          start the server in this JVM on in-memory stores instead of\n"
+            + "                                  the database and redis, to measure the server overhead alone\n"
+            + "  --rate=1000                     requests per second, sent on schedule whatever the latency\n"
+            + "  --duration=60                   measured seconds\n"
+            + "  --warmup=10                     seconds sent at the same rate before measuring\n"
+            + "  --connections=64                concurrent connections\n"
+            + "  --updateRatio=0.2               share of PUT /update among generated requests\n"
+            + "  --totalRecord=1000              totalRecord of generated commands\n"
+            + "  --replay=requests.jsonl         send the requests of this file in a loop instead\n"
+            + "  --timeoutMillis=10000           connect and read timeout of a request\n"
+            + "  --drain=30                      seconds to wait for queued requests after the last one\n"
+            + "  --histogram=latency.hgrm        write the corrected latency distribution to this file";
+
+    private final Map<String, String> values = new HashMap<>();
+
+    LoadTestOptions(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                values.put(arg.substring(2), "true");
+            } else {
+                values.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+    }
+
+    boolean isHelp() {
+        return values.containsKey("help");
+    }
+
+    String getTarget() {
+        return this.getString("target", "http://localhost:8080");
+    }
+
+    boolean isFake() {
+        return Boolean.parseBoolean(this.getString("fake", "false"));
+    }
+
+    int getRate() {
+        return this.getPositiveInt("rate", 1000);
+    }
+
+    int getDurationSeconds() {
+        return this.getPositiveInt("duration", 60);
+    }
+
+    int getWarmupSeconds() {
+        return Integer.parseInt(this.getString("warmup", "10"));
+    }
+
+    int getConnections() {
+        return this.getPositiveInt("connections", 64);
+    }
+
+    double getUpdateRatio() {
+        double updateRatio = Double.parseDouble(this.getString("updateRatio", "0.2"));
+        if (updateRatio < 0 || updateRatio > 1) {
+            throw new IllegalArgumentException("updateRatio must be between 0 and 1");
+        }
+        return updateRatio;
+    }
+
+    int getTotalRecord() {
+        return this.getPositiveInt("totalRecord", 1000);
+    }
+
+    String getReplay() {
+        return values.get("replay");
+    }
+
+    int getTimeoutMillis() {
+        return this.getPositiveInt("timeoutMillis", 10000);
+    }
+
+    int getDrainSeconds() {
+        return Integer.parseInt(this.getString("drain", "30"));
+    }
+
+    String getHistogram() {
+        return values.get("histogram");
+    }
+
+    private String getString(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    private int getPositiveInt(String name, int defaultValue) {
+        int value = Integer.parseInt(this.getString(name, String.valueOf(defaultValue)));
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+        return value;
+    }
+}
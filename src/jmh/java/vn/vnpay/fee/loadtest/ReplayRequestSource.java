@@ -0,0 +1,66 @@
+package vn.vnpay.fee.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Requests of a JSON lines file, sent in order and again from the start once the file is exhausted.
+ * A line is either {@code {"method":"PUT","path":"/update","body":{...}}} or a bare body sent to
+ * POST /init. An /update body without a commandCode gets one of a command created by the run.
+ */
+class ReplayRequestSource implements RequestSource {
+
+    private final List<LoadRequest> requests;
+    private int position;
+
+    private ReplayRequestSource(List<LoadRequest> requests) {
+        this.requests = requests;
+    }
+
+    static ReplayRequestSource read(String file, ObjectMapper objectMapper) throws IOException {
+        List<LoadRequest> requests = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                JsonNode node = objectMapper.readTree(line);
+                if (!node.isObject()) {
+                    throw new IOException("Line " + lineNumber + " of " + file + " is not a JSON object");
+                }
+                if (node.has("path")) {
+                    requests.add(new LoadRequest(node.path("method").asText("POST").toUpperCase(),
+                            node.get("path").asText(), node.get("body")));
+                } else {
+                    requests.add(new LoadRequest("POST", LoadRequest.INIT_PATH, node));
+                }
+            }
+        }
+        if (requests.isEmpty()) {
+            throw new IOException(file + " has no request");
+        }
+        return new ReplayRequestSource(requests);
+    }
+
+    int size() {
+        return requests.size();
+    }
+
+    @Override
+    public LoadRequest next() {
+        LoadRequest request = requests.get(position);
+        position = position + 1 == requests.size() ? 0 : position + 1;
+        return request;
+    }
+}
@@ -0,0 +1,9 @@
+package vn.vnpay.fee.loadtest;
+
+/**
+ * Supplies the requests of a run, called by the single pacing thread only.
+ */
+interface RequestSource {
+
+    LoadRequest next();
+}
@@ -0,0 +1,53 @@
+package vn.vnpay.fee.service.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import vn.vnpay.fee.bean.FeeCommand;
+import vn.vnpay.fee.common.CachedClock;
+import vn.vnpay.fee.config.node.NodeIdConfig;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds every fee transaction of a command the way the ORM path does before saving them, without
+ * the database. Each operation is one whole command.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeeTransactionGeneratorBenchmark {
+
+    @Param({"1", "100", "10000", "100000"})
+    private int totalRecord;
+    private FeeCommand feeCommand;
+
+    @Setup
+    public void setUp() throws IllegalAccessException {
+        NodeIdConfig.initNodeId();
+        feeCommand = new FeeCommand();
+        feeCommand.setCommandCode(1L);
+        feeCommand.setTotalRecord(totalRecord);
+        feeCommand.setCreatedDate(CachedClock.getInstance().now());
+    }
+
+    @Benchmark
+    public void createFeeTransactions(Blackhole blackhole) {
+        FeeTransactionGenerator feeTransactions = new FeeTransactionGenerator(feeCommand);
+        while (feeTransactions.hasNext()) {
+            blackhole.consume(feeTransactions.next());
+        }
+    }
+}
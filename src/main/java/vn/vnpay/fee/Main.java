@@ -2,31 +2,126 @@ package vn.vnpay.fee;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import vn.vnpay.fee.common.Readiness;
 import vn.vnpay.fee.config.database.DataSourceConfig;
+import vn.vnpay.fee.config.logging.LoggingConfig;
+import vn.vnpay.fee.config.node.NodeIdConfig;
 import vn.vnpay.fee.config.redis.RedisConfig;
+import vn.vnpay.fee.config.reload.ConfigWatcher;
+import vn.vnpay.fee.controller.AdmissionController;
 import vn.vnpay.fee.controller.FeeController;
+import vn.vnpay.fee.job.FeeCommandPipeline;
 import vn.vnpay.fee.job.ScheduleScanTime;
+import vn.vnpay.fee.job.StartupWarmUp;
 import vn.vnpay.fee.service.TransactionService;
+import vn.vnpay.fee.service.impl.BloomFilterIdempotencyStore;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Main {
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
+    private static volatile FeeController feeController;
+    private static volatile FeeCommandPipeline feeCommandPipeline;
+    private static volatile ScheduleScanTime scheduleScanTime;
+    private static volatile NodeIdConfig nodeIdConfig;
 
     public static void main(String[] args) {
+        long start = System.currentTimeMillis();
+        ExecutorService startupExecutor = Executors.newFixedThreadPool(2);
         try {
-            DataSourceConfig.initDatabaseConnectionPool();
-            RedisConfig.initRedisConfig();
+            ConfigWatcher.initConfigWatcher();
+            Runtime.getRuntime().addShutdownHook(new Thread(Main::shutdown, "fee-shutdown"));
+            LoggingConfig.initLogging();
+            // the database and redis do not depend on each other, the server answers 503 meanwhile
+            CompletableFuture<Void> database = runAsync(Main::initDatabase, startupExecutor);
+            CompletableFuture<Void> redis = runAsync(Main::initRedis, startupExecutor);
+            AdmissionController.initAdmissionController();
+            feeController = new FeeController();
+            List<String> listPath = Arrays.asList("/init", "/init/batch", "/update", "/status", "/metrics", "/ready");
+            feeController.start(listPath);
+            join(CompletableFuture.allOf(database, redis));
+            FeeCommandPipeline.initFeeCommandPipeline();
+            feeCommandPipeline = FeeCommandPipeline.getInstance();
             TransactionService transactionService = TransactionService.getInstance();
-            ScheduleScanTime scheduleScanTime = new ScheduleScanTime();
+            scheduleScanTime = new ScheduleScanTime();
             scheduleScanTime.cronJob(transactionService);
-            FeeController feeController = new FeeController();
-            List<String> listPath = Arrays.asList("/init", "/update");
-            feeController.start(listPath);
+            new StartupWarmUp().run(feeController, startupExecutor);
+            Readiness.markReady();
+            logger.info("Ready to take traffic in {} millisecond", System.currentTimeMillis() - start);
         } catch (Exception e) {
             logger.error("Failed to initialize", e);
             System.exit(3);
+        } finally {
+            startupExecutor.shutdown();
+        }
+    }
+
+    /**
+     * One hook stops everything in order, separate hooks run concurrently: the probe fails first, the server
+     * stops taking commands, then the commands already answered 202 are persisted before anything they
+     * depend on goes away. The node id is released last, the drain still allocates ids under the lease.
+     */
+    private static void shutdown() {
+        Readiness.markNotReady();
+        if (feeController != null) {
+            feeController.stop();
+        }
+        if (feeCommandPipeline != null) {
+            feeCommandPipeline.shutdown();
+        }
+        if (scheduleScanTime != null) {
+            scheduleScanTime.shutdown();
+        }
+        if (nodeIdConfig != null) {
+            nodeIdConfig.shutdown();
+        }
+        ConfigWatcher.getInstance().shutdown();
+    }
+
+    private static void initDatabase() throws Exception {
+        long start = System.currentTimeMillis();
+        DataSourceConfig.initDatabaseConnectionPool();
+        if (DataSourceConfig.getInstance().getSessionFactory() == null) {
+            throw new IllegalStateException("SessionFactory creation failed");
         }
+        logger.info("Init database in {} millisecond", System.currentTimeMillis() - start);
+    }
+
+    private static void initRedis() throws Exception {
+        long start = System.currentTimeMillis();
+        RedisConfig.initRedisConfig();
+        NodeIdConfig.initNodeId();
+        nodeIdConfig = NodeIdConfig.getInstance();
+        BloomFilterIdempotencyStore.initBloomFilterIdempotencyStore();
+        logger.info("Init redis in {} millisecond", System.currentTimeMillis() - start);
+    }
+
+    private static CompletableFuture<Void> runAsync(StartupTask task, ExecutorService executor) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private static void join(CompletableFuture<Void> future) throws Exception {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private interface StartupTask {
+        void run() throws Exception;
     }
-}
\ No newline at end of file
+}
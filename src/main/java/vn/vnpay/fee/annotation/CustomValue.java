@@ -9,4 +9,15 @@ import java.lang.annotation.Target;
 @Target(ElementType.FIELD)
 public @interface CustomValue {
     String value() default "";
-}
\ No newline at end of file
+
+    /**
+     * Whether the field is set again when the key changes in the config file. Such fields should be
+     * volatile and read on every use.
+     */
+    boolean reloadable() default false;
+
+    /**
+     * Smallest accepted value of a number field, a smaller value is refused like one that does not parse.
+     */
+    long min() default Long.MIN_VALUE;
+}
@@ -2,33 +2,138 @@ package vn.vnpay.fee.annotation;
 
 import vn.vnpay.fee.common.PropertiesFactory;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
 
+/**
+ * Sets {@link CustomValue} fields from the config. The annotated fields of a class, their setters and
+ * the parser of their type are looked up once per class and reused for every instance and reload.
+ */
 public class ValueInjector {
 
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final ClassValue<List<Binding>> BINDINGS = new ClassValue<List<Binding>>() {
+        @Override
+        protected List<Binding> computeValue(Class<?> type) {
+            return createBindings(type);
+        }
+    };
+
     private ValueInjector() {
     }
 
     public static void injectValues(Object target) throws IllegalAccessException {
-        Field[] fields = target.getClass().getDeclaredFields();
-        for (Field field : fields) {
-            if (field.isAnnotationPresent(CustomValue.class)) {
-                CustomValue customValue = field.getAnnotation(CustomValue.class);
-                String key = customValue.value();
-                field.setAccessible(true);
-                Class<?> fieldType = field.getType();
-                String value = PropertiesFactory.getFromProperties(key);
-                if (value.matches("\\d+") && (fieldType.isAssignableFrom(int.class) || fieldType.isAssignableFrom(Integer.class))) {
-                    int number = Integer.parseInt(value);
-                    field.set(target, number);
-                } else if (value.matches("^(true|false)$") && (fieldType.isAssignableFrom(boolean.class) || fieldType.isAssignableFrom(Boolean.class))) {
-                    boolean input = Boolean.parseBoolean(value);
-                    field.set(target, input);
-                } else {
-                    field.set(target, value);
-                }
+        for (Binding binding : BINDINGS.get(target.getClass())) {
+            binding.set(target, binding.parse(PropertiesFactory.getFromProperties(binding.key)));
+        }
+    }
+
+    /**
+     * Sets again the reloadable fields of the target bound to one of the changed keys. Every value is
+     * parsed before any field is set, so an invalid value leaves the target unchanged.
+     *
+     * @return whether a field of the target was set
+     */
+    public static boolean reinjectValues(Object target, Collection<String> changedKeys) throws IllegalAccessException {
+        List<Binding> bindings = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        for (Binding binding : BINDINGS.get(target.getClass())) {
+            if (binding.reloadable && changedKeys.contains(binding.key)) {
+                bindings.add(binding);
+                values.add(binding.parse(PropertiesFactory.getFromProperties(binding.key)));
+            }
+        }
+        for (int i = 0; i < bindings.size(); i++) {
+            bindings.get(i).set(target, values.get(i));
+        }
+        return !bindings.isEmpty();
+    }
+
+    private static List<Binding> createBindings(Class<?> type) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        List<Binding> bindings = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            CustomValue customValue = field.getAnnotation(CustomValue.class);
+            if (customValue == null) {
+                continue;
+            }
+            field.setAccessible(true);
+            try {
+                MethodHandle setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+                bindings.add(new Binding(customValue.value(), customValue.reloadable(), customValue.min(), setter,
+                        getParser(field.getType())));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot bind field " + field, e);
             }
         }
+        return bindings;
     }
 
-}
\ No newline at end of file
+    private static Function<String, Object> getParser(Class<?> fieldType) {
+        if (fieldType == int.class || fieldType == Integer.class) {
+            return value -> Integer.valueOf(value.trim());
+        } else if (fieldType == long.class || fieldType == Long.class) {
+            return value -> Long.valueOf(value.trim());
+        } else if (fieldType == double.class || fieldType == Double.class) {
+            return value -> Double.valueOf(value.trim());
+        } else if (fieldType == boolean.class || fieldType == Boolean.class) {
+            return value -> {
+                String trimmed = value.trim();
+                if (!"true".equals(trimmed) && !"false".equals(trimmed)) {
+                    throw new IllegalArgumentException("Expected true or false");
+                }
+                return Boolean.valueOf(trimmed);
+            };
+        }
+        return value -> value;
+    }
+
+    private static class Binding {
+        private final String key;
+        private final boolean reloadable;
+        private final long min;
+        private final MethodHandle setter;
+        private final Function<String, Object> parser;
+
+        Binding(String key, boolean reloadable, long min, MethodHandle setter, Function<String, Object> parser) {
+            this.key = key;
+            this.reloadable = reloadable;
+            this.min = min;
+            this.setter = setter;
+            this.parser = parser;
+        }
+
+        Object parse(String value) {
+            if (value == null) {
+                throw new IllegalArgumentException("Missing value of config key " + key);
+            }
+            Object parsed;
+            try {
+                parsed = parser.apply(value);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid value '" + value + "' of config key " + key, e);
+            }
+            if (parsed instanceof Number && ((Number) parsed).doubleValue() < min) {
+                throw new IllegalArgumentException("Value " + value.trim() + " of config key " + key
+                        + " must be at least " + min);
+            }
+            return parsed;
+        }
+
+        void set(Object target, Object parsed) throws IllegalAccessException {
+            try {
+                setter.invokeExact(target, parsed);
+            } catch (IllegalAccessException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Cannot set config key " + key, e);
+            }
+        }
+    }
+}
@@ -9,20 +9,31 @@ import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import java.time.LocalDateTime;
 import java.util.Objects;
 
 @Entity
-@Table(name = "FEE_COMMAND")
+@Table(name = "FEE_COMMAND", indexes = {
+        @Index(name = "IDX_FEE_COMMAND_COMMAND_CODE", columnList = "COMMAND_CODE", unique = true)
+})
 public class FeeCommand {
+    /**
+     * Must match the increment of FEE_COMMAND_SEQ in db/migration.
+     */
+    public static final int ID_ALLOCATION_SIZE = 10;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "FEE_COMMAND_ID_GENERATOR")
+    @SequenceGenerator(name = "FEE_COMMAND_ID_GENERATOR", sequenceName = "FEE_COMMAND_SEQ",
+            allocationSize = ID_ALLOCATION_SIZE)
     @Column(name = "ID")
     private int id;
 
     @Column(name = "COMMAND_CODE")
-    private String commandCode;
+    private Long commandCode;
 
     @Column(name = "TOTAL_RECORD")
     private int totalRecord;
@@ -45,11 +56,11 @@ public class FeeCommand {
         this.id = id;
     }
 
-    public String getCommandCode() {
+    public Long getCommandCode() {
         return commandCode;
     }
 
-    public void setCommandCode(String commandCode) {
+    public void setCommandCode(Long commandCode) {
         this.commandCode = commandCode;
     }
 
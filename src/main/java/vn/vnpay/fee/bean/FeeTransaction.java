@@ -9,23 +9,36 @@ import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import java.time.LocalDateTime;
 import java.util.Objects;
 
 @Entity
-@Table(name = "FEE_TRANSACTION")
+@Table(name = "FEE_TRANSACTION", indexes = {
+        @Index(name = "IDX_FEE_TRANSACTION_STATUS_NEXT_SCAN_AT", columnList = "STATUS, NEXT_SCAN_AT"),
+        @Index(name = "IDX_FEE_TRANSACTION_COMMAND_CODE_STATUS", columnList = "COMMAND_CODE, STATUS")
+})
 public class FeeTransaction {
+    /**
+     * Ids are drawn from a pooled sequence so Hibernate can batch the inserts,
+     * IDENTITY columns force one round trip per row.
+     */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "FEE_TRANSACTION_ID_GENERATOR")
+    @SequenceGenerator(name = "FEE_TRANSACTION_ID_GENERATOR", sequenceName = "FEE_TRANSACTION_SEQ",
+            allocationSize = ID_ALLOCATION_SIZE)
     @Column(name = "ID")
     private int id;
 
     @Column(name = "TRANSACTION_CODE")
-    private String transactionCode;
+    private long transactionCode;
 
     @Column(name = "COMMAND_CODE")
-    private String commandCode;
+    private long commandCode;
 
     @Column(name = "FEE_AMOUNT")
     private double feeAmount;
@@ -49,6 +62,9 @@ public class FeeTransaction {
     @Column(name = "MODIFIED_DATE")
     private LocalDateTime modifiedDate;
 
+    @Column(name = "NEXT_SCAN_AT")
+    private LocalDateTime nextScanAt;
+
     public int getId() {
         return id;
     }
@@ -57,19 +73,19 @@ public class FeeTransaction {
         this.id = id;
     }
 
-    public String getTransactionCode() {
+    public long getTransactionCode() {
         return transactionCode;
     }
 
-    public void setTransactionCode(String transactionCode) {
+    public void setTransactionCode(long transactionCode) {
         this.transactionCode = transactionCode;
     }
 
-    public String getCommandCode() {
+    public long getCommandCode() {
         return commandCode;
     }
 
-    public void setCommandCode(String commandCode) {
+    public void setCommandCode(long commandCode) {
         this.commandCode = commandCode;
     }
 
@@ -129,6 +145,14 @@ public class FeeTransaction {
         this.modifiedDate = modifiedDate;
     }
 
+    public LocalDateTime getNextScanAt() {
+        return nextScanAt;
+    }
+
+    public void setNextScanAt(LocalDateTime nextScanAt) {
+        this.nextScanAt = nextScanAt;
+    }
+
     @Override
     public boolean equals(Object object) {
         if (this == object) return true;
@@ -137,18 +161,19 @@ public class FeeTransaction {
         return id == that.id &&
                 Double.compare(feeAmount, that.feeAmount) == 0 &&
                 totalScan == that.totalScan &&
-                Objects.equals(transactionCode, that.transactionCode) &&
-                Objects.equals(commandCode, that.commandCode) &&
+                transactionCode == that.transactionCode &&
+                commandCode == that.commandCode &&
                 status == that.status &&
                 Objects.equals(accountNumber, that.accountNumber) &&
                 Objects.equals(remark, that.remark) &&
-                Objects.equals(modifiedDate, that.modifiedDate);
+                Objects.equals(modifiedDate, that.modifiedDate) &&
+                Objects.equals(nextScanAt, that.nextScanAt);
     }
 
     @Override
     public int hashCode() {
         return Objects.hash(id, transactionCode, commandCode,
                 feeAmount, status, accountNumber, totalScan,
-                remark, modifiedDate);
+                remark, modifiedDate, nextScanAt);
     }
 }
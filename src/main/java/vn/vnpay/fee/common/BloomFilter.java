@@ -0,0 +1,112 @@
+package vn.vnpay.fee.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Bloom filter over strings, sized from the expected number of insertions and
+ * the target false positive rate.
+ */
+public class BloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashCount;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expectedInsertions must be greater than 0");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (LN2 * LN2));
+        int words = (int) ((optimalBits + 63) >>> 6);
+        this.bits = new AtomicLongArray(words);
+        this.bitSize = (long) words << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * LN2));
+    }
+
+    public boolean mightContain(String value) {
+        long hash1 = hash(value);
+        long hash2 = Long.rotateLeft(hash1 * 0x9e3779b97f4a7c15L, 31) | 1;
+        for (int i = 1; i <= hashCount; i++) {
+            long bitIndex = index(hash1 + i * hash2);
+            if ((bits.get((int) (bitIndex >>> 6)) & (1L << bitIndex)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true when at least one bit changed, meaning the value was definitely not in the filter before
+     */
+    public boolean put(String value) {
+        long hash1 = hash(value);
+        long hash2 = Long.rotateLeft(hash1 * 0x9e3779b97f4a7c15L, 31) | 1;
+        boolean changed = false;
+        for (int i = 1; i <= hashCount; i++) {
+            long bitIndex = index(hash1 + i * hash2);
+            int word = (int) (bitIndex >>> 6);
+            long mask = 1L << bitIndex;
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(word, current, current | mask));
+            changed |= (current & mask) == 0;
+        }
+        return changed;
+    }
+
+    /**
+     * Probability that a value never inserted is reported as present, from the current fill ratio.
+     */
+    public double expectedFalsePositiveRate() {
+        return Math.pow((double) bitCount() / bitSize, hashCount);
+    }
+
+    public long memoryBytes() {
+        return bitSize >>> 3;
+    }
+
+    public long bitSize() {
+        return bitSize;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    private long bitCount() {
+        long count = 0;
+        for (int i = 0; i < bits.length(); i++) {
+            count += Long.bitCount(bits.get(i));
+        }
+        return count;
+    }
+
+    private long index(long combinedHash) {
+        return (combinedHash & Long.MAX_VALUE) % bitSize;
+    }
+
+    private static long hash(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb3f94d1c2d89L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,58 @@
+package vn.vnpay.fee.common;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Caps how many callers use a pooled resource at once. Only enabled when requests run on virtual
+ * threads, platform thread pools are already smaller than the resource pools.
+ */
+public class Bulkhead {
+
+    private final ResizableSemaphore permits;
+    private int maxConcurrent;
+
+    public Bulkhead(boolean enabled, int maxConcurrent) {
+        this.permits = enabled ? new ResizableSemaphore(maxConcurrent) : null;
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    public void acquire() {
+        if (permits != null) {
+            permits.acquireUninterruptibly();
+        }
+    }
+
+    public void release() {
+        if (permits != null) {
+            permits.release();
+        }
+    }
+
+    /**
+     * Follows a resized resource pool. Callers holding a permit keep it, a smaller cap only applies
+     * once enough of them have released.
+     */
+    public synchronized void resize(int newMaxConcurrent) {
+        if (permits != null) {
+            int delta = newMaxConcurrent - maxConcurrent;
+            if (delta > 0) {
+                permits.release(delta);
+            } else if (delta < 0) {
+                permits.reducePermits(-delta);
+            }
+        }
+        maxConcurrent = newMaxConcurrent;
+    }
+
+    private static class ResizableSemaphore extends Semaphore {
+
+        ResizableSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package vn.vnpay.fee.common;
+
+import vn.vnpay.fee.annotation.CustomValue;
+import vn.vnpay.fee.annotation.ValueInjector;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall clock read from a field a daemon thread refreshes every tick, so callers read a volatile instead
+ * of asking the system, and never allocate. The zone offset and the end of the current local day are
+ * worked out again only when the clock crosses midnight or a zone transition.
+ */
+public class CachedClock {
+
+    private static final LocalTime END_OF_DAY = LocalTime.of(23, 59, 59);
+    private static volatile CachedClock instance;
+    private final ZoneId zoneId = ZoneId.systemDefault();
+    private final ZoneRules zoneRules = zoneId.getRules();
+    @CustomValue("clock.tickMillis")
+    private int tickMillis;
+    private volatile long currentTimeMillis;
+    private volatile ZoneOffset offset;
+    private volatile long endOfDaySeconds;
+    private long nextBoundaryMillis;
+
+    private CachedClock() {
+        try {
+            ValueInjector.injectValues(this);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot inject configuration into CachedClock", e);
+        }
+        this.tick();
+        Thread ticker = new Thread(this::run, "cached-clock");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    public static CachedClock getInstance() {
+        if (instance == null) {
+            synchronized (CachedClock.class) {
+                if (instance == null) {
+                    instance = new CachedClock();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @return epoch millis, behind the system clock by at most one tick
+     */
+    public long currentTimeMillis() {
+        return currentTimeMillis;
+    }
+
+    /**
+     * @return the current local date and time as epoch millis of the same wall clock reading in UTC,
+     * comparable with {@link CommonUtil#parseLocalMillis(CharSequence)}
+     */
+    public long localTimeMillis() {
+        return currentTimeMillis + offset.getTotalSeconds() * 1000L;
+    }
+
+    /**
+     * Meant to be read once per batch and shared by its rows.
+     */
+    public LocalDateTime now() {
+        long millis = currentTimeMillis;
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000),
+                (int) TimeUnit.MILLISECONDS.toNanos(Math.floorMod(millis, 1000)), offset);
+    }
+
+    /**
+     * @return seconds from now to 23:59:59 of the current local day, negative in its last second
+     */
+    public long secondsToEndOfDay() {
+        return endOfDaySeconds - Math.floorDiv(currentTimeMillis, 1000);
+    }
+
+    /**
+     * @return epoch millis of 23:59:59 of the current local day, worked out when the day started
+     */
+    public long endOfDayMillis() {
+        return endOfDaySeconds * 1000;
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                Thread.sleep(tickMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            this.tick();
+        }
+    }
+
+    private void tick() {
+        long millis = System.currentTimeMillis();
+        if (millis >= nextBoundaryMillis) {
+            this.computeBoundaries(millis);
+        }
+        currentTimeMillis = millis;
+    }
+
+    private void computeBoundaries(long millis) {
+        Instant instant = Instant.ofEpochMilli(millis);
+        ZoneOffset currentOffset = zoneRules.getOffset(instant);
+        LocalDate today = LocalDateTime.ofInstant(instant, currentOffset).toLocalDate();
+        endOfDaySeconds = today.atTime(END_OF_DAY).toEpochSecond(currentOffset);
+        offset = currentOffset;
+        long nextMidnightMillis = today.plusDays(1).atStartOfDay(zoneId).toInstant().toEpochMilli();
+        ZoneOffsetTransition transition = zoneRules.nextTransition(instant);
+        nextBoundaryMillis = transition == null ? nextMidnightMillis
+                : Math.min(nextMidnightMillis, transition.toEpochSecond() * 1000);
+    }
+}
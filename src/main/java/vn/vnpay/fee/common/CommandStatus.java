@@ -0,0 +1,7 @@
+package vn.vnpay.fee.common;
+
+public enum CommandStatus {
+    PENDING,
+    PERSISTED,
+    FAILED
+}
@@ -3,6 +3,7 @@ package vn.vnpay.fee.common;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import vn.vnpay.fee.config.node.NodeIdConfig;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -12,15 +13,26 @@ import java.net.URLDecoder;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 
 public class CommonUtil {
+    /**
+     * MDC key of the id that correlates every log line of one request or job run.
+     */
+    public static final String LOG_ID = "logId";
+    public static final String ACCESS_LOGGER = "ACCESS";
+    private static final long LOG_ID_TYPE = 3;
+    private static final long DATABASE_ID_TYPE = 6;
+    private static final long EXPIRED_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(11);
+    private static final int REQUEST_TIME_LENGTH = 14;
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+    private static final long DAYS_0000_TO_1970 = 719528L;
     private static final ObjectMapper objectMapper = new ObjectMapper();
     private CommonUtil() {
     }
@@ -72,27 +84,77 @@ public class CommonUtil {
         return queryParams;
     }
 
+    /**
+     * A request time more than 10 whole minutes away from now, either way, is expired.
+     */
     public static boolean isExpired(String requestTime) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
-        LocalDateTime parsedTime = LocalDateTime.parse(requestTime, formatter);
-        LocalDateTime currentTime = LocalDateTime.now();
-        long minutesDiff = java.time.Duration.between(parsedTime, currentTime).toMinutes();
-        return Math.abs(minutesDiff) > 10;
+        long requestTimeMillis = parseLocalMillis(requestTime);
+        return Math.abs(CachedClock.getInstance().localTimeMillis() - requestTimeMillis) >= EXPIRED_AFTER_MILLIS;
     }
 
+    /**
+     * Parses a yyyyMMddHHmmss local date time into epoch millis of the same wall clock reading in UTC,
+     * without allocating. Like the default resolver of {@code DateTimeFormatter}, a day past the end of
+     * the month is moved back to its last day and 240000 is midnight of the next day.
+     *
+     * @throws DateTimeParseException when the text is not a valid yyyyMMddHHmmss date time
+     */
+    public static long parseLocalMillis(CharSequence text) {
+        if (text.length() != REQUEST_TIME_LENGTH) {
+            throw new DateTimeParseException("Text '" + text + "' could not be parsed", text, 0);
+        }
+        int year = parseDigits(text, 0, 4);
+        int month = parseDigits(text, 4, 6);
+        int day = parseDigits(text, 6, 8);
+        int hour = parseDigits(text, 8, 10);
+        int minute = parseDigits(text, 10, 12);
+        int second = parseDigits(text, 12, 14);
+        boolean endOfDay = hour == 24 && minute == 0 && second == 0;
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > 31 || (hour > 23 && !endOfDay) || minute > 59
+                || second > 59) {
+            throw new DateTimeParseException("Text '" + text + "' could not be parsed", text, 0);
+        }
+        boolean leapYear = (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+        day = Math.min(day, month == 2 ? (leapYear ? 29 : 28) : DAYS_IN_MONTH[month - 1]);
+        // same arithmetic as LocalDate.toEpochDay
+        long epochDay = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400
+                + (367 * month - 362) / 12 + day - 1;
+        if (month > 2) {
+            epochDay -= leapYear ? 1 : 2;
+        }
+        epochDay -= DAYS_0000_TO_1970;
+        return ((epochDay * 24 + hour) * 60 + minute) * 60_000L + second * 1000L;
+    }
+
+    private static int parseDigits(CharSequence text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new DateTimeParseException("Text '" + text + "' could not be parsed", text, i);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
 
     public static long processTimeToLife() {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime endOfDay = LocalDateTime.of(now.getYear(), now.getMonth(), now.getDayOfMonth(), 23, 59, 59);
-        return endOfDay.toEpochSecond(ZoneOffset.UTC) - now.toEpochSecond(ZoneOffset.UTC);
+        return CachedClock.getInstance().secondsToEndOfDay();
     }
 
     public static String generateLogId() {
-        Snowflake snowflake = SnowflakeSingleton.getInstanceForLogId(3, 5);
+        Snowflake snowflake = SnowflakeSingleton.getInstanceForLogId(LOG_ID_TYPE, NodeIdConfig.getInstance().getNodeId());
         return Long.toString(snowflake.nextId());
     }
-    public static String getNextId() {
-        Snowflake snowflake = SnowflakeSingleton.getInstanceForDatabaseId(6, 5);
-        return Long.toString(snowflake.nextId());
+    public static long getNextId() {
+        Snowflake snowflake = SnowflakeSingleton.getInstanceForDatabaseId(DATABASE_ID_TYPE,
+                NodeIdConfig.getInstance().getLeasedNodeId());
+        return snowflake.nextId();
+    }
+
+    public static IdRange getNextIds(int count) {
+        Snowflake snowflake = SnowflakeSingleton.getInstanceForDatabaseId(DATABASE_ID_TYPE,
+                NodeIdConfig.getInstance().getLeasedNodeId());
+        return snowflake.nextIds(count);
     }
 }
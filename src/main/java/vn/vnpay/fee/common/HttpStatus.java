@@ -2,6 +2,12 @@ package vn.vnpay.fee.common;
 
 public enum HttpStatus {
     SUCCESS(200, "Successfully", "00"),
+    ACCEPTED(202, "Request is accepted", "00"),
+    BAD_REQUEST(400, "Bad request", "01"),
+    NOT_FOUND(404, "Not found", "01"),
+    PAYLOAD_TOO_LARGE(413, "Payload too large", "01"),
+    TOO_MANY_REQUESTS(429, "Too many requests", "01"),
+    SERVICE_UNAVAILABLE(503, "Service unavailable", "01"),
     FAILURE(500, "Failure", "01"),
     REQUEST_TIMEOUT(408, "Request Timeout", "01"),
     INTERNAL_SERVER_ERROR(500, "Internal server error", "01"),
@@ -0,0 +1,28 @@
+package vn.vnpay.fee.common;
+
+/**
+ * Ids reserved together by {@link Snowflake#nextIds(int)}, computed on demand from the first slot.
+ */
+public class IdRange {
+
+    private final Snowflake snowflake;
+    private final long firstSlot;
+    private final int size;
+
+    IdRange(Snowflake snowflake, long firstSlot, int size) {
+        this.snowflake = snowflake;
+        this.firstSlot = firstSlot;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return snowflake.toId(firstSlot + index);
+    }
+}
@@ -5,42 +5,93 @@ import org.slf4j.LoggerFactory;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
 
+/**
+ * Holds the config file in memory. It is read once on first use and read again only by
+ * {@link #reload()}, lookups never touch the file. A JVM system property with the same key as an
+ * entry of the file wins over it, e.g. {@code -Dsnowflake.nodeId=3}.
+ */
 public class PropertiesFactory {
 
+    public static final String CONFIG_PATH = "src/main/resources/config.properties";
     private static final Logger logger = LoggerFactory.getLogger(PropertiesFactory.class);
+    private static volatile Map<String, String> values;
 
     private PropertiesFactory() {
     }
 
     public static String getFromProperties(String key) {
-        Properties properties = new Properties();
-        try (FileInputStream input = new FileInputStream("src/main/resources/config.properties")) {
-            properties.load(input);
-        } catch (Exception e) {
-            logger.error(" Get properties from resource failed with root cause : ", e);
-        }
-        return properties.getProperty(key);
+        return getValues().get(key);
     }
 
     public static Map<String, String> readKeysFromPropertiesFile(String prefix) {
         Map<String, String> keyValueMap = new HashMap<>();
-        Properties properties = new Properties();
-        try (FileInputStream input = new FileInputStream("src/main/resources/config.properties")) {
-            properties.load(input);
-            for (String key : properties.stringPropertyNames()) {
-                if (key.startsWith(prefix)) {
-                    String value = properties.getProperty(key);
-                    String mapKey = key.replace(prefix, "");
-                    keyValueMap.put(mapKey, value);
-                }
+        for (Map.Entry<String, String> entry : getValues().entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                keyValueMap.put(entry.getKey().replace(prefix, ""), entry.getValue());
             }
-        } catch (IOException e) {
-            logger.error(" Get properties from resource failed with root cause : ", e);
         }
         return keyValueMap;
     }
+
+    /**
+     * Reads the config file again. A file that cannot be read keeps the current values.
+     *
+     * @return the keys that were added, removed or changed
+     */
+    public static synchronized Set<String> reload() throws IOException {
+        Map<String, String> current = getValues();
+        Map<String, String> loaded = load();
+        Set<String> changedKeys = new HashSet<>();
+        for (Map.Entry<String, String> entry : loaded.entrySet()) {
+            if (!Objects.equals(entry.getValue(), current.get(entry.getKey()))) {
+                changedKeys.add(entry.getKey());
+            }
+        }
+        for (String key : current.keySet()) {
+            if (!loaded.containsKey(key)) {
+                changedKeys.add(key);
+            }
+        }
+        values = loaded;
+        return changedKeys;
+    }
+
+    private static Map<String, String> getValues() {
+        Map<String, String> current = values;
+        if (current == null) {
+            synchronized (PropertiesFactory.class) {
+                current = values;
+                if (current == null) {
+                    try {
+                        current = load();
+                    } catch (IOException e) {
+                        logger.error(" Get properties from resource failed with root cause : ", e);
+                        current = Collections.emptyMap();
+                    }
+                    values = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static Map<String, String> load() throws IOException {
+        Properties properties = new Properties();
+        try (FileInputStream input = new FileInputStream(CONFIG_PATH)) {
+            properties.load(input);
+        }
+        Map<String, String> loaded = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            loaded.put(key, System.getProperty(key, properties.getProperty(key)));
+        }
+        return Collections.unmodifiableMap(loaded);
+    }
 }
@@ -0,0 +1,25 @@
+package vn.vnpay.fee.common;
+
+/**
+ * Whether this node may take traffic. The server listens while the node is still starting and answers
+ * every request, /ready included, with 503 until startup and warm-up are done.
+ */
+public class Readiness {
+
+    private static volatile boolean ready;
+
+    private Readiness() {
+    }
+
+    public static boolean isReady() {
+        return ready;
+    }
+
+    public static void markReady() {
+        ready = true;
+    }
+
+    public static void markNotReady() {
+        ready = false;
+    }
+}
@@ -1,5 +1,7 @@
 package vn.vnpay.fee.common;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public class Snowflake {
 
     private static final long START_STMP = 1672531200000L;  // 2023-01-01T00:00:00Z
@@ -25,10 +27,23 @@ public class Snowflake {
     private static final long DATACENTER_LEFT = SEQUENCE_BIT + MACHINE_BIT;
     private static final long TIMESTMP_LEFT = DATACENTER_LEFT + DATACENTER_BIT;
 
-    private final long datacenterId;
+    /**
+     * number of distinct machine ids, one per running instance
+     */
+    public static final int NODE_COUNT = 1 << MACHINE_BIT;
+
+    /**
+     * how far the clock may step back, e.g. on an NTP correction, before generation is refused
+     */
+    private static final long MAX_BACKWARD_MILLIS = 5000;
+
     private final long machineId;
-    private long sequence = 0L;
-    private long lastStmp = -1L;
+    private final long nodeBits;
+    /**
+     * next free slot, the millisecond since START_STMP shifted over the sequence bits plus the sequence
+     */
+    private final AtomicLong nextSlot = new AtomicLong();
+    private volatile long lastClockMillis;
 
     public Snowflake(long datacenterId, long machineId) {
         if (datacenterId > MAX_DATACENTER_NUM || datacenterId < 0) {
@@ -37,38 +52,68 @@ public class Snowflake {
         if (machineId > MAX_MACHINE_NUM || machineId < 0) {
             throw new IllegalArgumentException("machineId can't be greater than MAX_MACHINE_NUM or less than 0");
         }
-        this.datacenterId = datacenterId;
         this.machineId = machineId;
+        this.nodeBits = datacenterId << DATACENTER_LEFT | machineId << MACHINE_LEFT;
+    }
+
+    public long getMachineId() {
+        return machineId;
+    }
+
+    /**
+     * @return the epoch millisecond of the last id handed out, ahead of the clock after large ranges,
+     * 0 before the first id
+     */
+    public long getLastMillis() {
+        long next = nextSlot.get();
+        return next == 0 ? 0 : ((next - 1) >>> SEQUENCE_BIT) + START_STMP;
+    }
+
+    public long nextId() {
+        return toId(reserve(1));
     }
 
-    public synchronized long nextId() {
-        long currStmp = getNewstmp();
-        if (currStmp < lastStmp) {
-            throw new RuntimeException("Clock moved backwards.  Refusing to generate id");
+    /**
+     * Reserves {@code count} ids with a single CAS. A range longer than the sequence of one millisecond
+     * carries into the following milliseconds, so the ids run ahead of the clock until it catches up.
+     */
+    public IdRange nextIds(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be greater than 0");
         }
-        if (currStmp == lastStmp) {
-            sequence = (sequence + 1) & MAX_SEQUENCE;
-            if (sequence == 0L) {
-                currStmp = getNextMill();
+        return new IdRange(this, reserve(count), count);
+    }
+
+    private long reserve(int count) {
+        while (true) {
+            long current = nextSlot.get();
+            long start = Math.max(current, (readClock() - START_STMP) << SEQUENCE_BIT);
+            if (nextSlot.compareAndSet(current, start + count)) {
+                return start;
             }
-        } else {
-            sequence = 0L;
         }
+    }
 
-        lastStmp = currStmp;
-
-        return (currStmp - START_STMP) << TIMESTMP_LEFT //timestampPart
-                | datacenterId << DATACENTER_LEFT       //dataCenterPart
-                | machineId << MACHINE_LEFT             //machineIdentificationPart
-                | sequence;                             //serialNumberPart
+    long toId(long slot) {
+        return (slot >>> SEQUENCE_BIT) << TIMESTMP_LEFT //timestampPart
+                | nodeBits                              //dataCenterPart and machineIdentificationPart
+                | slot & MAX_SEQUENCE;                  //serialNumberPart
     }
 
-    private long getNextMill() {
-        long mill = getNewstmp();
-        while (mill <= lastStmp) {
-            mill = getNewstmp();
+    /**
+     * A small step back is absorbed: the slot never moves backwards, ids continue from the last
+     * millisecond handed out until the clock passes it again.
+     */
+    private long readClock() {
+        long now = getNewstmp();
+        long last = lastClockMillis;
+        if (now > last) {
+            lastClockMillis = now;
+        } else if (last - now > MAX_BACKWARD_MILLIS) {
+            throw new IllegalStateException("Clock moved backwards by " + (last - now)
+                    + " millisecond. Refusing to generate id");
         }
-        return mill;
+        return now;
     }
 
     private long getNewstmp() {
@@ -76,4 +121,3 @@ public class Snowflake {
     }
 
 }
-
@@ -1,5 +1,9 @@
 package vn.vnpay.fee.common;
 
+/**
+ * One generator per id type, created again with the new node id when the node id of this instance
+ * changes after a lost lease.
+ */
 public class SnowflakeSingleton {
     private static volatile Snowflake instanceForLogId;
     private static volatile Snowflake instanceForDatabaseId;
@@ -11,14 +15,17 @@ public class SnowflakeSingleton {
      * @param type : The nodeId is identified of application
      */
     public static Snowflake getInstanceForLogId(long type, long nodeId) {
-        if (instanceForLogId == null) {
+        Snowflake instance = instanceForLogId;
+        if (instance == null || instance.getMachineId() != nodeId) {
             synchronized (SnowflakeSingleton.class) {
-                if (instanceForLogId == null) {
-                    instanceForLogId = new Snowflake(type, nodeId);
+                instance = instanceForLogId;
+                if (instance == null || instance.getMachineId() != nodeId) {
+                    instance = new Snowflake(type, nodeId);
+                    instanceForLogId = instance;
                 }
             }
         }
-        return instanceForLogId;
+        return instance;
     }
 
     /**
@@ -28,13 +35,26 @@ public class SnowflakeSingleton {
      * @param type : The nodeId is identified of application
      */
     public static Snowflake getInstanceForDatabaseId(long type, long nodeId) {
-        if (instanceForDatabaseId == null) {
+        Snowflake instance = instanceForDatabaseId;
+        if (instance == null || instance.getMachineId() != nodeId) {
             synchronized (SnowflakeSingleton.class) {
-                if (instanceForDatabaseId == null) {
-                    instanceForDatabaseId = new Snowflake(type, nodeId);
+                instance = instanceForDatabaseId;
+                if (instance == null || instance.getMachineId() != nodeId) {
+                    instance = new Snowflake(type, nodeId);
+                    instanceForDatabaseId = instance;
                 }
             }
         }
-        return instanceForDatabaseId;
+        return instance;
+    }
+
+    /**
+     * @return the latest epoch millisecond in an id handed out by either generator, 0 before the first id
+     */
+    public static long getLastMillis() {
+        Snowflake logId = instanceForLogId;
+        Snowflake databaseId = instanceForDatabaseId;
+        return Math.max(logId == null ? 0 : logId.getLastMillis(),
+                databaseId == null ? 0 : databaseId.getLastMillis());
     }
 }
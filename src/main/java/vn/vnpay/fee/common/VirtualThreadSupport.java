@@ -0,0 +1,42 @@
+package vn.vnpay.fee.common;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads through reflection, so the code still compiles for and runs on Java 8.
+ */
+public class VirtualThreadSupport {
+
+    private static final int MIN_FEATURE_VERSION = 21;
+
+    private VirtualThreadSupport() {
+    }
+
+    public static boolean isSupported() {
+        String version = System.getProperty("java.specification.version");
+        if (version == null || version.startsWith("1.")) {
+            return false;
+        }
+        try {
+            return Integer.parseInt(version) >= MIN_FEATURE_VERSION;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param enabled : the virtual thread mode flag from configuration
+     */
+    public static boolean isEnabled(boolean enabled) {
+        return enabled && isSupported();
+    }
+
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads are not available on this runtime", e);
+        }
+    }
+}
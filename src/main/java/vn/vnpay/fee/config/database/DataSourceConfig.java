@@ -1,37 +1,74 @@
 package vn.vnpay.fee.config.database;
 
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.Metadata;
 import org.hibernate.boot.MetadataSources;
 import org.hibernate.boot.registry.StandardServiceRegistry;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import vn.vnpay.fee.annotation.CustomValue;
+import vn.vnpay.fee.annotation.ValueInjector;
 import vn.vnpay.fee.bean.FeeCommand;
 import vn.vnpay.fee.bean.FeeTransaction;
+import vn.vnpay.fee.common.Bulkhead;
+import vn.vnpay.fee.common.VirtualThreadSupport;
+import vn.vnpay.fee.config.logging.LoggingConfig;
+import vn.vnpay.fee.config.reload.ConfigWatcher;
 
 public class DataSourceConfig {
 
+    private static final String HIKARI_MAXIMUM_POOL_SIZE = "hibernate.hikari.maximumPoolSize";
     private static volatile DataSourceConfig instance;
     private final Logger logger = LoggerFactory.getLogger(DataSourceConfig.class);
     private StandardServiceRegistry registry;
     private SessionFactory sessionFactory;
+    @CustomValue(value = "database.jdbc.batchSize", reloadable = true, min = 1)
+    private volatile int jdbcBatchSize;
+    @CustomValue(value = "database.copy.threshold", reloadable = true)
+    private volatile int copyThreshold;
+    @CustomValue(value = "database.pool.maximumPoolSize", reloadable = true, min = 1)
+    private volatile int maximumPoolSize;
+    @CustomValue("database.schema.action")
+    private String schemaAction;
+    @CustomValue("server.virtualThreads.enabled")
+    private boolean virtualThreadsEnabled;
+    private Bulkhead bulkhead;
 
-    public static void initDatabaseConnectionPool() {
+    public static void initDatabaseConnectionPool() throws IllegalAccessException {
         if (instance == null) {
             synchronized (DataSourceConfig.class) {
                 if (instance == null) {
                     DataSourceConfig connectionPoolTemp = new DataSourceConfig();
+                    ValueInjector.injectValues(connectionPoolTemp);
                     connectionPoolTemp.registerSession();
+                    ConfigWatcher.getInstance().register(connectionPoolTemp, changedKeys -> {
+                        if (changedKeys.contains("database.pool.maximumPoolSize")) {
+                            connectionPoolTemp.resizePool();
+                        }
+                    });
                     instance = connectionPoolTemp;
                 }
             }
         }
     }
 
-    private static StandardServiceRegistryBuilder getStandardServiceRegistryBuilder() {
+    private StandardServiceRegistryBuilder getStandardServiceRegistryBuilder() {
         StandardServiceRegistryBuilder registryBuilder = new StandardServiceRegistryBuilder();
         registryBuilder.configure();
+        registryBuilder.applySetting(AvailableSettings.STATEMENT_BATCH_SIZE, jdbcBatchSize);
+        registryBuilder.applySetting(HIKARI_MAXIMUM_POOL_SIZE, String.valueOf(maximumPoolSize));
+        registryBuilder.applySetting(AvailableSettings.HBM2DDL_AUTO, schemaAction);
+        registryBuilder.applySetting(AvailableSettings.ORDER_INSERTS, true);
+        registryBuilder.applySetting(AvailableSettings.ORDER_UPDATES, true);
+        // statements are printed straight to stdout, keep them for trace mode only
+        registryBuilder.applySetting(AvailableSettings.SHOW_SQL, LoggingConfig.getInstance().isTraceMode());
         return registryBuilder;
     }
 
@@ -46,6 +83,7 @@ public class DataSourceConfig {
         if (sessionFactory == null) {
             try {
                 StandardServiceRegistryBuilder registryBuilder = getStandardServiceRegistryBuilder();
+                bulkhead = new Bulkhead(VirtualThreadSupport.isEnabled(virtualThreadsEnabled), maximumPoolSize);
                 registry = registryBuilder.build();
                 logger.info("Hibernate Registry builder created.");
 
@@ -64,10 +102,75 @@ public class DataSourceConfig {
         }
     }
 
+    /**
+     * Hikari reads the maximum pool size on every connection request, so the pool grows on demand and
+     * shrinks as idle connections are retired.
+     */
+    private void resizePool() {
+        this.getDataSource().getHikariConfigMXBean().setMaximumPoolSize(maximumPoolSize);
+        bulkhead.resize(maximumPoolSize);
+        logger.info("Resize database connection pool to {} connections", maximumPoolSize);
+    }
+
+    /**
+     * Runs a query, then waits until the pool holds its minimum idle connections so the first requests
+     * do not pay for opening them.
+     *
+     * @return whether the pool was filled before the timeout
+     */
+    public boolean warmUpPool(long timeoutMillis) throws InterruptedException {
+        try (Session session = this.openSession()) {
+            session.createNativeQuery("SELECT 1").getSingleResult();
+        }
+        HikariDataSource dataSource = this.getDataSource();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (dataSource.getHikariPoolMXBean().getTotalConnections() < dataSource.getMinimumIdle()) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private HikariDataSource getDataSource() {
+        return ((SessionFactoryImplementor) sessionFactory).getServiceRegistry()
+                .getService(ConnectionProvider.class).unwrap(HikariDataSource.class);
+    }
+
     public SessionFactory getSessionFactory() {
         return sessionFactory;
     }
 
+    /**
+     * Opens a session once a connection of the pool is free for it, the permit is given back when
+     * the session is closed.
+     */
+    public Session openSession() {
+        bulkhead.acquire();
+        try {
+            return sessionFactory.withOptions()
+                    .eventListeners(new BaseSessionEventListener() {
+                        @Override
+                        public void end() {
+                            bulkhead.release();
+                        }
+                    })
+                    .openSession();
+        } catch (RuntimeException e) {
+            bulkhead.release();
+            throw e;
+        }
+    }
+
+    public int getJdbcBatchSize() {
+        return jdbcBatchSize;
+    }
+
+    public int getCopyThreshold() {
+        return copyThreshold;
+    }
+
     public void shutdown() {
         if (registry != null) {
             StandardServiceRegistryBuilder.destroy(registry);
@@ -0,0 +1,61 @@
+package vn.vnpay.fee.config.logging;
+
+import ch.qos.logback.classic.Level;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vn.vnpay.fee.annotation.CustomValue;
+import vn.vnpay.fee.annotation.ValueInjector;
+import vn.vnpay.fee.config.reload.ConfigWatcher;
+
+/**
+ * Applies {@code logging.mode} to the application loggers. {@code trace} logs every step of a request,
+ * {@code summary} one line per stage, {@code access} only warnings, errors and the access log line.
+ */
+public class LoggingConfig {
+
+    private static final String APPLICATION_LOGGER = "vn.vnpay.fee";
+    private static final String TRACE_MODE = "trace";
+    private static final String ACCESS_MODE = "access";
+    private static volatile LoggingConfig instance;
+    private final Logger logger = LoggerFactory.getLogger(LoggingConfig.class);
+    @CustomValue(value = "logging.mode", reloadable = true)
+    private volatile String mode;
+
+    public static void initLogging() throws IllegalAccessException {
+        if (instance == null) {
+            synchronized (LoggingConfig.class) {
+                if (instance == null) {
+                    LoggingConfig instanceTemp = new LoggingConfig();
+                    ValueInjector.injectValues(instanceTemp);
+                    instanceTemp.applyMode();
+                    ConfigWatcher.getInstance().register(instanceTemp, changedKeys -> instanceTemp.applyMode());
+                    instance = instanceTemp;
+                }
+            }
+        }
+    }
+
+    public static LoggingConfig getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("LoggingConfig not initialized. Call init() before getInstance()");
+        }
+        return instance;
+    }
+
+    private void applyMode() {
+        Level level;
+        if (TRACE_MODE.equalsIgnoreCase(mode)) {
+            level = Level.DEBUG;
+        } else if (ACCESS_MODE.equalsIgnoreCase(mode)) {
+            level = Level.WARN;
+        } else {
+            level = Level.INFO;
+        }
+        logger.info("Logging in {} mode", mode);
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(APPLICATION_LOGGER)).setLevel(level);
+    }
+
+    public boolean isTraceMode() {
+        return TRACE_MODE.equalsIgnoreCase(mode);
+    }
+}
@@ -0,0 +1,234 @@
+package vn.vnpay.fee.config.node;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.params.SetParams;
+import vn.vnpay.fee.annotation.CustomValue;
+import vn.vnpay.fee.annotation.ValueInjector;
+import vn.vnpay.fee.common.Readiness;
+import vn.vnpay.fee.common.Snowflake;
+import vn.vnpay.fee.common.SnowflakeSingleton;
+import vn.vnpay.fee.config.redis.RedisConfig;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides the Snowflake node id of this instance. A configured id is used as is, otherwise a free id
+ * is leased in redis under a key that expires unless this instance keeps renewing it, so the id of a
+ * crashed instance is reclaimed after the lease ttl and the id of a stopped one straight away.
+ * Database ids are only generated while the lease is known to be held: when no renewal succeeded
+ * within the ttl, or another instance holds the id, generation stops and the node reports not ready
+ * until a free id is leased again.
+ */
+public class NodeIdConfig {
+
+    private static final String NODE_KEY_PREFIX = "fee:snowflake:node:";
+    private static final String NODE_COUNTER_KEY = "fee:snowflake:node:counter";
+    private static final String RENEW_SCRIPT = "if redis.call('get', KEYS[1]) == ARGV[1] then "
+            + "return redis.call('expire', KEYS[1], ARGV[2]) else return 0 end";
+    private static final String RELEASE_SCRIPT = "if redis.call('get', KEYS[1]) == ARGV[1] then "
+            + "return redis.call('del', KEYS[1]) else return 0 end";
+    private static volatile NodeIdConfig instance;
+    private final Logger logger = LoggerFactory.getLogger(NodeIdConfig.class);
+    private final String leaseToken = UUID.randomUUID().toString();
+    @CustomValue("snowflake.nodeId")
+    private int configuredNodeId;
+    @CustomValue("snowflake.lease.ttlSeconds")
+    private int leaseTtlSeconds;
+    private volatile int nodeId;
+    /**
+     * until when the lease is surely held, the redis key expires no earlier, 0 while no id is held
+     */
+    private volatile long leaseDeadlineMillis = Long.MAX_VALUE;
+    private boolean readinessRevoked;
+    private ScheduledExecutorService renewScheduler;
+
+    private NodeIdConfig() {
+    }
+
+    public static void initNodeId() throws IllegalAccessException {
+        if (instance == null) {
+            synchronized (NodeIdConfig.class) {
+                if (instance == null) {
+                    NodeIdConfig instanceTemp = new NodeIdConfig();
+                    ValueInjector.injectValues(instanceTemp);
+                    instanceTemp.registerNodeId();
+                    instance = instanceTemp;
+                }
+            }
+        }
+    }
+
+    public static NodeIdConfig getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("NodeIdConfig not initialized. Call init() before getInstance()");
+        }
+        return instance;
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return the node id to generate database ids with
+     * @throws IllegalStateException while the lease of the node id is not surely held
+     */
+    public int getLeasedNodeId() {
+        if (System.currentTimeMillis() >= leaseDeadlineMillis) {
+            throw new IllegalStateException("Lease of snowflake node id " + nodeId
+                    + " is not held, refusing to generate id");
+        }
+        return nodeId;
+    }
+
+    private void registerNodeId() {
+        if (configuredNodeId >= 0) {
+            if (configuredNodeId >= Snowflake.NODE_COUNT) {
+                throw new IllegalArgumentException("snowflake.nodeId must be less than " + Snowflake.NODE_COUNT);
+            }
+            nodeId = configuredNodeId;
+            logger.info("Use configured snowflake node id {}", nodeId);
+            return;
+        }
+        long leaseStart = System.currentTimeMillis();
+        nodeId = this.leaseNodeId();
+        leaseDeadlineMillis = leaseStart + TimeUnit.SECONDS.toMillis(leaseTtlSeconds);
+        renewScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snowflake-node-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long renewIntervalSeconds = Math.max(1, leaseTtlSeconds / 3);
+        renewScheduler.scheduleWithFixedDelay(this::renewLease, renewIntervalSeconds, renewIntervalSeconds,
+                TimeUnit.SECONDS);
+        logger.info("Lease snowflake node id {} with ttl {} seconds", nodeId, leaseTtlSeconds);
+    }
+
+    /**
+     * Starts from a shared counter so instances starting together try different ids first.
+     */
+    private int leaseNodeId() {
+        RedisConfig redisConfig = RedisConfig.getInstance();
+        Jedis jedis = redisConfig.getResource();
+        try {
+            return this.leaseNodeId(jedis);
+        } finally {
+            redisConfig.returnConnection(jedis);
+        }
+    }
+
+    private int leaseNodeId(Jedis jedis) {
+        long start = jedis.incr(NODE_COUNTER_KEY);
+        for (int i = 0; i < Snowflake.NODE_COUNT; i++) {
+            int candidate = (int) ((start + i) % Snowflake.NODE_COUNT);
+            String result = jedis.set(NODE_KEY_PREFIX + candidate, leaseToken,
+                    SetParams.setParams().nx().ex((long) leaseTtlSeconds));
+            if ("OK".equalsIgnoreCase(result)) {
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("All " + Snowflake.NODE_COUNT + " snowflake node ids are leased");
+    }
+
+    private void awaitClockPastLastId() throws InterruptedException {
+        long waitMillis;
+        while ((waitMillis = SnowflakeSingleton.getLastMillis() - System.currentTimeMillis() + 1) > 0) {
+            logger.info("Wait {} millisecond for the clock to pass the last id of snowflake node id {}",
+                    waitMillis, nodeId);
+            Thread.sleep(waitMillis);
+        }
+    }
+
+    private synchronized void renewLease() {
+        long renewStart = System.currentTimeMillis();
+        RedisConfig redisConfig = RedisConfig.getInstance();
+        Jedis jedis = null;
+        try {
+            jedis = redisConfig.getResource();
+            if (leaseDeadlineMillis > 0) {
+                Object renewed = jedis.eval(RENEW_SCRIPT, Collections.singletonList(NODE_KEY_PREFIX + nodeId),
+                        Arrays.asList(leaseToken, String.valueOf(leaseTtlSeconds)));
+                if (Long.valueOf(1L).equals(renewed)) {
+                    leaseDeadlineMillis = renewStart + TimeUnit.SECONDS.toMillis(leaseTtlSeconds);
+                    return;
+                }
+                this.suspend("Lease of snowflake node id " + nodeId + " expired or is held by another instance");
+            }
+            int leasedNodeId = this.leaseNodeId(jedis);
+            this.resume(leasedNodeId, renewStart + TimeUnit.SECONDS.toMillis(leaseTtlSeconds));
+        } catch (Exception e) {
+            logger.error("Error renewing lease of snowflake node id {}", nodeId, e);
+            if (leaseDeadlineMillis > 0 && System.currentTimeMillis() >= leaseDeadlineMillis) {
+                this.suspend("No renewal of snowflake node id " + nodeId + " succeeded within "
+                        + leaseTtlSeconds + " seconds");
+            }
+        } finally {
+            if (jedis != null) {
+                redisConfig.returnConnection(jedis);
+            }
+        }
+    }
+
+    /**
+     * Stops id generation and takes the node out of the load balancer until a free id is held again.
+     */
+    private void suspend(String reason) {
+        leaseDeadlineMillis = 0;
+        if (Readiness.isReady()) {
+            Readiness.markNotReady();
+            readinessRevoked = true;
+        }
+        logger.error("{}, stop generating ids until a free node id is leased", reason);
+    }
+
+    private void resume(int leasedNodeId, long deadlineMillis) {
+        nodeId = leasedNodeId;
+        leaseDeadlineMillis = deadlineMillis;
+        if (readinessRevoked) {
+            readinessRevoked = false;
+            Readiness.markReady();
+        }
+        logger.warn("Lease snowflake node id {} again, generate ids with it", leasedNodeId);
+    }
+
+    /**
+     * Releases the leased node id once the clock has passed every id handed out, ids run ahead of the
+     * clock after large ranges and the next holder of the id starts from its own clock.
+     */
+    public void shutdown() {
+        if (renewScheduler == null) {
+            return;
+        }
+        renewScheduler.shutdownNow();
+        leaseDeadlineMillis = 0;
+        try {
+            this.awaitClockPastLastId();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted before the clock passed the last id, leave snowflake node id {} to expire",
+                    nodeId);
+            return;
+        }
+        RedisConfig redisConfig = RedisConfig.getInstance();
+        Jedis jedis = null;
+        try {
+            jedis = redisConfig.getResource();
+            jedis.eval(RELEASE_SCRIPT, Collections.singletonList(NODE_KEY_PREFIX + nodeId),
+                    Collections.singletonList(leaseToken));
+            logger.info("Release snowflake node id {}", nodeId);
+        } catch (Exception e) {
+            logger.error("Error releasing snowflake node id {}", nodeId, e);
+        } finally {
+            if (jedis != null) {
+                redisConfig.returnConnection(jedis);
+            }
+        }
+    }
+}
@@ -7,6 +7,8 @@ import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 import vn.vnpay.fee.annotation.CustomValue;
 import vn.vnpay.fee.annotation.ValueInjector;
+import vn.vnpay.fee.common.Bulkhead;
+import vn.vnpay.fee.common.VirtualThreadSupport;
 
 public class RedisConfig {
     private static volatile RedisConfig instance;
@@ -26,6 +28,9 @@ public class RedisConfig {
     private int redisMinIdleConnPool;
     @CustomValue("connection.pool.redis.minIdle")
     private int redisMaxIdleConnPool;
+    @CustomValue("server.virtualThreads.enabled")
+    private boolean virtualThreadsEnabled;
+    private Bulkhead bulkhead;
 
     public static void initRedisConfig() throws IllegalAccessException {
         if (instance == null) {
@@ -54,6 +59,7 @@ public class RedisConfig {
         poolConfig.setMaxIdle(redisMaxIdleConnPool);
         jedisPool = new JedisPool(poolConfig, redisHost, redisPort);
         jedisPool.addObjects(redisMinIdleConnPool);
+        bulkhead = new Bulkhead(VirtualThreadSupport.isEnabled(virtualThreadsEnabled), redisMaxTotalConnPool);
         logger.info("Create redis pool configuration with {} connections", jedisPool.getNumIdle());
     }
 
@@ -61,8 +67,35 @@ public class RedisConfig {
         return jedisPool;
     }
 
+    /**
+     * Borrows a connection, waiting for a permit first when requests run on virtual threads.
+     * Give it back with {@link #returnConnection(Jedis)}.
+     */
+    public Jedis getResource() {
+        bulkhead.acquire();
+        try {
+            return jedisPool.getResource();
+        } catch (RuntimeException e) {
+            bulkhead.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Pings redis on a connection of the pool, failing when redis cannot be reached.
+     */
+    public void ping() {
+        Jedis jedis = this.getResource();
+        try {
+            jedis.ping();
+        } finally {
+            this.returnConnection(jedis);
+        }
+    }
+
     public void returnConnection(Jedis jedis) {
         jedis.close();
+        bulkhead.release();
     }
 
 }
@@ -0,0 +1,12 @@
+package vn.vnpay.fee.config.reload;
+
+import java.util.Set;
+
+/**
+ * Called after the reloadable fields of a registered target were set from a changed config file.
+ */
+@FunctionalInterface
+public interface ConfigChangeListener {
+
+    void onConfigChange(Set<String> changedKeys);
+}
@@ -0,0 +1,149 @@
+package vn.vnpay.fee.config.reload;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vn.vnpay.fee.annotation.CustomValue;
+import vn.vnpay.fee.annotation.ValueInjector;
+import vn.vnpay.fee.common.PropertiesFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the config file and applies its changes to the registered targets. Only fields marked
+ * {@link CustomValue#reloadable()} are set again, other keys keep their value until the next restart.
+ * Editors often write a file in several steps, so events are collected for a short quiet period
+ * before the file is read.
+ */
+public class ConfigWatcher {
+
+    private static final long QUIET_PERIOD_MILLIS = 200;
+    private static volatile ConfigWatcher instance;
+    private final Logger logger = LoggerFactory.getLogger(ConfigWatcher.class);
+    private final Map<Object, ConfigChangeListener> targets = new ConcurrentHashMap<>();
+    @CustomValue("config.reload.enabled")
+    private boolean enabled;
+    private WatchService watchService;
+
+    private ConfigWatcher() {
+    }
+
+    public static void initConfigWatcher() throws IllegalAccessException, IOException {
+        if (instance == null) {
+            synchronized (ConfigWatcher.class) {
+                if (instance == null) {
+                    ConfigWatcher instanceTemp = new ConfigWatcher();
+                    ValueInjector.injectValues(instanceTemp);
+                    if (instanceTemp.enabled) {
+                        instanceTemp.startWatching();
+                    }
+                    instance = instanceTemp;
+                }
+            }
+        }
+    }
+
+    public static ConfigWatcher getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("ConfigWatcher not initialized. Call init() before getInstance()");
+        }
+        return instance;
+    }
+
+    public void register(Object target) {
+        this.register(target, changedKeys -> {
+        });
+    }
+
+    /**
+     * @param listener called on the watcher thread after the reloadable fields of the target changed
+     */
+    public void register(Object target, ConfigChangeListener listener) {
+        targets.put(target, listener);
+    }
+
+    private void startWatching() throws IOException {
+        Path configFile = Paths.get(PropertiesFactory.CONFIG_PATH).toAbsolutePath();
+        watchService = FileSystems.getDefault().newWatchService();
+        configFile.getParent().register(watchService, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_CREATE);
+        Thread thread = new Thread(() -> this.watch(configFile.getFileName()), "config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Watch {} for config changes", configFile);
+    }
+
+    private void watch(Path fileName) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = this.pollEvents(key, fileName);
+                while ((key = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= this.pollEvents(key, fileName);
+                }
+                if (changed) {
+                    this.reload();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            logger.debug("Config watcher stopped");
+        }
+    }
+
+    private boolean pollEvents(WatchKey key, Path fileName) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            changed |= fileName.equals(event.context());
+        }
+        key.reset();
+        return changed;
+    }
+
+    private void reload() {
+        Set<String> changedKeys;
+        try {
+            changedKeys = PropertiesFactory.reload();
+        } catch (IOException e) {
+            logger.error("Error reloading config, keep the current values", e);
+            return;
+        }
+        if (changedKeys.isEmpty()) {
+            return;
+        }
+        logger.info("Reload config with changed keys {}", new TreeSet<>(changedKeys));
+        for (Map.Entry<Object, ConfigChangeListener> target : targets.entrySet()) {
+            try {
+                if (ValueInjector.reinjectValues(target.getKey(), changedKeys)) {
+                    target.getValue().onConfigChange(changedKeys);
+                }
+            } catch (Exception e) {
+                logger.error("Error applying config change to {}", target.getKey().getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    public void shutdown() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.error("Error closing config watcher", e);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package vn.vnpay.fee.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vn.vnpay.fee.annotation.CustomValue;
+import vn.vnpay.fee.annotation.ValueInjector;
+import vn.vnpay.fee.config.reload.ConfigWatcher;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how many requests are queued or running at once. The limit follows AIMD: every request that
+ * completes under the latency target while the limit is in use grows it by 1/limit, a slow or dropped
+ * request shrinks it by the backoff ratio. Requests over the limit are rejected straight away.
+ */
+public class AdmissionController {
+
+    private static volatile AdmissionController instance;
+    private final Logger logger = LoggerFactory.getLogger(AdmissionController.class);
+    @CustomValue("server.admission.enabled")
+    private boolean enabled;
+    @CustomValue("server.admission.initialLimit")
+    private int initialLimit;
+    @CustomValue(value = "server.admission.minLimit", reloadable = true)
+    private volatile int minLimit;
+    @CustomValue(value = "server.admission.maxLimit", reloadable = true)
+    private volatile int maxLimit;
+    @CustomValue(value = "server.admission.latencyTargetMillis", reloadable = true)
+    private volatile int latencyTargetMillis;
+    @CustomValue(value = "server.admission.backoffRatio", reloadable = true)
+    private volatile double backoffRatio;
+    @CustomValue(value = "server.admission.queueTimeoutMillis", reloadable = true)
+    private volatile int queueTimeoutMillis;
+    @CustomValue(value = "server.admission.retryAfterSeconds", reloadable = true)
+    private volatile int retryAfterSeconds;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long latencyTargetNanos;
+    private volatile long queueTimeoutNanos;
+    private volatile double limit;
+
+    private AdmissionController() {
+    }
+
+    public static void initAdmissionController() throws IllegalAccessException {
+        if (instance == null) {
+            synchronized (AdmissionController.class) {
+                if (instance == null) {
+                    AdmissionController instanceTemp = new AdmissionController();
+                    ValueInjector.injectValues(instanceTemp);
+                    if (instanceTemp.enabled) {
+                        instanceTemp.limit = instanceTemp.initialLimit;
+                        instanceTemp.applyTimeouts();
+                        ConfigWatcher.getInstance().register(instanceTemp, changedKeys -> instanceTemp.onConfigChange());
+                        instance = instanceTemp;
+                        instanceTemp.logger.info("Admission control is enabled with limit {} between {} and {}",
+                                instanceTemp.initialLimit, instanceTemp.minLimit, instanceTemp.maxLimit);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the controller, or null when admission control is disabled
+     */
+    public static AdmissionController getInstance() {
+        return instance;
+    }
+
+    /**
+     * Takes a slot for a new request. Every successful call must be paired with
+     * {@link #onComplete(long)} or {@link #onDropped()}.
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                admitted.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    boolean isQueueTimeout(long queuedNanos) {
+        return queuedNanos > queueTimeoutNanos;
+    }
+
+    void onComplete(long latencyNanos) {
+        int current = inFlight.getAndDecrement();
+        if (latencyNanos > latencyTargetNanos) {
+            this.decreaseLimit();
+        } else if (current * 2 >= limit) {
+            this.increaseLimit();
+        }
+    }
+
+    void onDropped() {
+        inFlight.decrementAndGet();
+        dropped.incrementAndGet();
+        this.decreaseLimit();
+    }
+
+    int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("admission.limit", (int) limit);
+        metrics.put("admission.inFlight", inFlight.get());
+        metrics.put("admission.admitted", admitted.get());
+        metrics.put("admission.rejected", rejected.get());
+        metrics.put("admission.dropped", dropped.get());
+        return metrics;
+    }
+
+    private void applyTimeouts() {
+        latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetMillis);
+        queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+    }
+
+    private synchronized void onConfigChange() {
+        this.applyTimeouts();
+        limit = Math.max(minLimit, Math.min(maxLimit, limit));
+        logger.info("Admission limit is now {} between {} and {}", (int) limit, minLimit, maxLimit);
+    }
+
+    private synchronized void increaseLimit() {
+        limit = Math.min(maxLimit, limit + 1.0 / limit);
+    }
+
+    private synchronized void decreaseLimit() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+}
@@ -0,0 +1,80 @@
+package vn.vnpay.fee.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vn.vnpay.fee.common.HttpStatus;
+import vn.vnpay.fee.handle.ResponseWriter;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs on the server dispatcher thread and hands admitted requests to the worker executor. Requests
+ * over the concurrency limit get 429, requests that waited in the queue past the deadline or that
+ * the executor rejects get 503, both with a Retry-After header.
+ */
+class AdmissionHandler implements HttpHandler {
+
+    private final Logger logger = LoggerFactory.getLogger(AdmissionHandler.class);
+    private final HttpHandler delegate;
+    private final Executor executor;
+    private final AdmissionController admissionController;
+    private final byte[] tooManyRequestsBody;
+    private final byte[] serviceUnavailableBody;
+
+    AdmissionHandler(HttpHandler delegate, Executor executor, AdmissionController admissionController)
+            throws JsonProcessingException {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.admissionController = admissionController;
+        this.tooManyRequestsBody = ResponseWriter.toBytes(HttpStatus.TOO_MANY_REQUESTS, null);
+        this.serviceUnavailableBody = ResponseWriter.toBytes(HttpStatus.SERVICE_UNAVAILABLE, null);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) {
+        if (!admissionController.tryAcquire()) {
+            this.reject(exchange, HttpStatus.TOO_MANY_REQUESTS, tooManyRequestsBody);
+            return;
+        }
+        long queuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> this.process(exchange, queuedAt));
+        } catch (RejectedExecutionException e) {
+            admissionController.onDropped();
+            this.reject(exchange, HttpStatus.SERVICE_UNAVAILABLE, serviceUnavailableBody);
+        }
+    }
+
+    private void process(HttpExchange exchange, long queuedAt) {
+        long startedAt = System.nanoTime();
+        if (admissionController.isQueueTimeout(startedAt - queuedAt)) {
+            admissionController.onDropped();
+            this.reject(exchange, HttpStatus.SERVICE_UNAVAILABLE, serviceUnavailableBody);
+            return;
+        }
+        try {
+            delegate.handle(exchange);
+        } catch (Exception e) {
+            logger.error("Handle request fail ", e);
+        } finally {
+            exchange.close();
+            admissionController.onComplete(System.nanoTime() - startedAt);
+        }
+    }
+
+    private void reject(HttpExchange exchange, HttpStatus status, byte[] body) {
+        try {
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(admissionController.getRetryAfterSeconds()));
+            ResponseWriter.write(exchange, status.getCode(), body);
+        } catch (IOException e) {
+            logger.warn("Cannot send {} response to client", status.getCode(), e);
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -1,30 +1,145 @@
 package vn.vnpay.fee.controller;
 
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import vn.vnpay.fee.annotation.CustomValue;
+import vn.vnpay.fee.annotation.ValueInjector;
+import vn.vnpay.fee.common.VirtualThreadSupport;
+import vn.vnpay.fee.controller.nio.NioHttpServer;
 import vn.vnpay.fee.handle.RequestHandler;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 
 public class FeeController {
     static Logger logger = LoggerFactory.getLogger(FeeController.class);
+    private static final String NIO_SERVER_MODE = "nio";
+    /**
+     * answered in memory on the dispatcher thread without admission, a probe must not get 429 or 503
+     * from a node that is only busy
+     */
+    private static final List<String> UNADMITTED_PATHS = Arrays.asList("/ready", "/metrics");
+    @CustomValue("server.port")
+    private int port;
+    @CustomValue("server.mode")
+    private String serverMode;
+    @CustomValue("server.nio.selectorThreads")
+    private int selectorThreads;
+    @CustomValue("server.nio.bufferSize")
+    private int bufferSize;
+    @CustomValue("server.nio.maxRequestBytes")
+    private int maxRequestBytes;
+    @CustomValue("server.nio.idleTimeoutMillis")
+    private int idleTimeoutMillis;
+    @CustomValue("server.virtualThreads.enabled")
+    private boolean virtualThreadsEnabled;
+    private RequestHandler requestHandler;
+    private HttpServer httpServer;
+    private NioHttpServer nioHttpServer;
+    private ExecutorService workerExecutor;
+
+    public FeeController() {
+        this(null);
+    }
+
+    /**
+     * Serves requests with the given handler, a null handler is created on the configured stores at start.
+     */
+    public FeeController(RequestHandler requestHandler) {
+        this.requestHandler = requestHandler;
+    }
 
     public void start(List<String> pathList) {
         try {
-            HttpServer server = HttpServer.create(new InetSocketAddress(8080), 0);
-            RequestHandler requestHandler = new RequestHandler();
-            pathList.forEach(t -> server.createContext(t, requestHandler));
-            server.setExecutor(new ThreadPoolExecutor(4, 8, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(100)));
-            server.start();
-            logger.info("Server is running on port 8080");
+            ValueInjector.injectValues(this);
+            workerExecutor = this.createExecutor();
+            AdmissionController admissionController = AdmissionController.getInstance();
+            HttpHandler handler;
+            ExecutorService executor;
+            if (requestHandler == null) {
+                requestHandler = new RequestHandler();
+            }
+            if (admissionController != null) {
+                // admission runs on the dispatcher thread, which hands admitted requests to the workers
+                handler = new AdmissionHandler(requestHandler, workerExecutor, admissionController);
+                executor = null;
+            } else {
+                handler = requestHandler;
+                executor = workerExecutor;
+            }
+            if (NIO_SERVER_MODE.equalsIgnoreCase(serverMode)) {
+                NioHttpServer server = new NioHttpServer(new InetSocketAddress(port), selectorThreads, bufferSize,
+                        maxRequestBytes, idleTimeoutMillis);
+                pathList.forEach(t -> server.createContext(t, this.getContextHandler(t, handler)));
+                server.setExecutor(executor);
+                server.start();
+                nioHttpServer = server;
+                logger.info("NIO server is running on port {} with {} selector threads", port, selectorThreads);
+            } else {
+                HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+                pathList.forEach(t -> server.createContext(t, this.getContextHandler(t, handler)));
+                server.setExecutor(executor);
+                server.start();
+                httpServer = server;
+                logger.info("Server is running on port {}", port);
+            }
         } catch (Exception e) {
             logger.error("Server is started failed ", e);
         }
     }
+
+    /**
+     * Stops accepting connections and waits for the requests already handed to the workers, so every
+     * command answered 202 has reached the pipeline before it drains.
+     */
+    public void stop() {
+        if (nioHttpServer != null) {
+            nioHttpServer.stop();
+        }
+        if (httpServer != null) {
+            httpServer.stop(1);
+        }
+        if (workerExecutor == null) {
+            return;
+        }
+        workerExecutor.shutdown();
+        try {
+            if (!workerExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("Server stopped with requests still running");
+            }
+            logger.info("Server stopped");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private HttpHandler getContextHandler(String path, HttpHandler handler) {
+        return UNADMITTED_PATHS.contains(path) ? requestHandler : handler;
+    }
+
+    public void warmUp(int iterations) throws IOException {
+        if (requestHandler != null) {
+            requestHandler.warmUp(iterations);
+        }
+    }
+
+    private ExecutorService createExecutor() {
+        if (VirtualThreadSupport.isEnabled(virtualThreadsEnabled)) {
+            logger.info("Handle requests on virtual threads");
+            return VirtualThreadSupport.newVirtualThreadPerTaskExecutor();
+        }
+        if (virtualThreadsEnabled) {
+            logger.warn("Virtual threads require Java 21 or later, handle requests on the thread pool");
+        }
+        return new ThreadPoolExecutor(4, 8, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(100));
+    }
 }
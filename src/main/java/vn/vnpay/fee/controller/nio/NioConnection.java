@@ -0,0 +1,258 @@
+package vn.vnpay.fee.controller.nio;
+
+import com.sun.net.httpserver.Headers;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * State of one client connection. Every method except {@link #respond} runs on the selector
+ * thread owning the connection. Requests are served one at a time, pipelined requests wait in
+ * the input buffer until the previous response is written.
+ */
+class NioConnection {
+
+    private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final SocketChannel channel;
+    private final NioSelectorThread owner;
+    private final InetSocketAddress remoteAddress;
+    private final InetSocketAddress localAddress;
+    private final Deque<ByteBuffer> pendingWrites = new ArrayDeque<>();
+    private SelectionKey key;
+    private byte[] input = new byte[1024];
+    private int inputLength;
+    private boolean inFlight;
+    private boolean closeAfterWrite;
+    private boolean continueSent;
+    private long lastActivity;
+
+    NioConnection(SocketChannel channel, NioSelectorThread owner) throws IOException {
+        this.channel = channel;
+        this.owner = owner;
+        this.remoteAddress = (InetSocketAddress) channel.getRemoteAddress();
+        this.localAddress = (InetSocketAddress) channel.getLocalAddress();
+        this.lastActivity = System.currentTimeMillis();
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    InetSocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    InetSocketAddress getLocalAddress() {
+        return localAddress;
+    }
+
+    long getLastActivity() {
+        return lastActivity;
+    }
+
+    boolean isIdle() {
+        return !inFlight && pendingWrites.isEmpty();
+    }
+
+    /**
+     * Copies the bytes read from the socket and dispatches a request when one is complete.
+     */
+    void onRead(ByteBuffer readBuffer) {
+        lastActivity = System.currentTimeMillis();
+        int length = readBuffer.remaining();
+        if (inputLength + length > owner.getMaxRequestBytes()) {
+            this.respondError(413);
+            return;
+        }
+        if (inputLength + length > input.length) {
+            input = Arrays.copyOf(input, Math.max(input.length * 2, inputLength + length));
+        }
+        readBuffer.get(input, inputLength, length);
+        inputLength += length;
+        this.tryDispatch();
+    }
+
+    private void tryDispatch() {
+        if (inFlight || closeAfterWrite) {
+            return;
+        }
+        int headerEnd = indexOf(input, inputLength, HEADER_END);
+        if (headerEnd < 0) {
+            return;
+        }
+        String head = new String(input, 0, headerEnd, StandardCharsets.ISO_8859_1);
+        String[] lines = head.split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3) {
+            this.respondError(400);
+            return;
+        }
+        Headers headers = new Headers();
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                headers.add(lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim());
+            }
+        }
+        if (headers.getFirst("Transfer-Encoding") != null) {
+            this.respondError(411);
+            return;
+        }
+        int contentLength;
+        try {
+            String contentLengthHeader = headers.getFirst("Content-Length");
+            contentLength = contentLengthHeader == null ? 0 : Integer.parseInt(contentLengthHeader);
+        } catch (NumberFormatException e) {
+            this.respondError(400);
+            return;
+        }
+        int bodyStart = headerEnd + HEADER_END.length;
+        if (contentLength < 0 || bodyStart + (long) contentLength > owner.getMaxRequestBytes()) {
+            this.respondError(413);
+            return;
+        }
+        if (inputLength < bodyStart + contentLength) {
+            // a client sending Expect holds the body back until told to go on, the cap was checked above
+            if (!continueSent && "100-continue".equalsIgnoreCase(headers.getFirst("Expect"))) {
+                this.sendContinue();
+            }
+            return;
+        }
+        URI uri;
+        try {
+            uri = new URI(requestLine[1]);
+        } catch (URISyntaxException e) {
+            this.respondError(400);
+            return;
+        }
+        byte[] body = Arrays.copyOfRange(input, bodyStart, bodyStart + contentLength);
+        int consumed = bodyStart + contentLength;
+        System.arraycopy(input, consumed, input, 0, inputLength - consumed);
+        inputLength -= consumed;
+
+        String protocol = requestLine[2];
+        String connectionHeader = headers.getFirst("Connection");
+        boolean keepAlive = "HTTP/1.1".equals(protocol)
+                ? !"close".equalsIgnoreCase(connectionHeader)
+                : "keep-alive".equalsIgnoreCase(connectionHeader);
+        inFlight = true;
+        continueSent = false;
+        key.interestOps(0);
+        owner.dispatch(new NioHttpExchange(this, requestLine[0], uri, protocol, headers, body, keepAlive));
+    }
+
+    /**
+     * Called from the worker thread once the handler has produced the response.
+     */
+    void respond(byte[] head, byte[] body, boolean keepAlive) {
+        owner.execute(() -> this.queueResponse(head, body, keepAlive));
+    }
+
+    private void sendContinue() {
+        continueSent = true;
+        ByteBuffer buffer = owner.getBufferPool().acquire();
+        buffer.put(CONTINUE);
+        buffer.flip();
+        pendingWrites.add(buffer);
+        key.interestOps(SelectionKey.OP_WRITE);
+        this.onWrite();
+    }
+
+    void respondError(int status) {
+        String head = "HTTP/1.1 " + status + " " + NioHttpExchange.reasonPhrase(status)
+                + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n";
+        inFlight = true;
+        this.queueResponse(head.getBytes(StandardCharsets.US_ASCII), new byte[0], false);
+    }
+
+    private void queueResponse(byte[] head, byte[] body, boolean keepAlive) {
+        if (!key.isValid()) {
+            return;
+        }
+        BufferPool bufferPool = owner.getBufferPool();
+        ByteBuffer buffer = bufferPool.acquire();
+        for (byte[] bytes : new byte[][]{head, body}) {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    pendingWrites.add(buffer);
+                    buffer = bufferPool.acquire();
+                }
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+        buffer.flip();
+        pendingWrites.add(buffer);
+        closeAfterWrite = !keepAlive;
+        key.interestOps(SelectionKey.OP_WRITE);
+        this.onWrite();
+    }
+
+    void onWrite() {
+        lastActivity = System.currentTimeMillis();
+        try {
+            while (!pendingWrites.isEmpty()) {
+                ByteBuffer buffer = pendingWrites.peek();
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    return;
+                }
+                owner.getBufferPool().release(pendingWrites.poll());
+            }
+        } catch (IOException e) {
+            this.close();
+            return;
+        }
+        if (closeAfterWrite) {
+            this.close();
+            return;
+        }
+        inFlight = false;
+        key.interestOps(SelectionKey.OP_READ);
+        this.tryDispatch();
+    }
+
+    void close() {
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // the connection is dropped either way
+        }
+        for (ByteBuffer buffer : pendingWrites) {
+            owner.getBufferPool().release(buffer);
+        }
+        pendingWrites.clear();
+    }
+
+    private static int indexOf(byte[] bytes, int length, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (bytes[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
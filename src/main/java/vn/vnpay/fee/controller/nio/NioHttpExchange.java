@@ -0,0 +1,211 @@
+package vn.vnpay.fee.controller.nio;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Exchange of a request read by the NIO server, so the existing handlers run unchanged.
+ * The response is buffered and handed back to the selector thread when the response body
+ * or the exchange is closed.
+ */
+class NioHttpExchange extends HttpExchange {
+
+    private final NioConnection connection;
+    private final String requestMethod;
+    private final URI requestUri;
+    private final String protocol;
+    private final Headers requestHeaders;
+    private final Headers responseHeaders = new Headers();
+    private final boolean keepAlive;
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private final Map<String, Object> attributes = new HashMap<>();
+    private InputStream requestBody;
+    private OutputStream responseBody;
+    private ByteArrayOutputStream responseBuffer;
+    private int responseCode = -1;
+
+    NioHttpExchange(NioConnection connection, String requestMethod, URI requestUri, String protocol,
+                    Headers requestHeaders, byte[] body, boolean keepAlive) {
+        this.connection = connection;
+        this.requestMethod = requestMethod;
+        this.requestUri = requestUri;
+        this.protocol = protocol;
+        this.requestHeaders = requestHeaders;
+        this.keepAlive = keepAlive;
+        this.requestBody = new ByteArrayInputStream(body);
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return requestUri;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return requestMethod;
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+        this.finish();
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return requestBody;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        if (responseBody == null) {
+            responseBuffer = new ByteArrayOutputStream(256);
+            responseBody = new OutputStream() {
+                @Override
+                public void write(int b) {
+                    responseBuffer.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    responseBuffer.write(b, off, len);
+                }
+
+                @Override
+                public void close() {
+                    NioHttpExchange.this.finish();
+                }
+            };
+        }
+        return responseBody;
+    }
+
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+        if (responseCode != -1) {
+            throw new IOException("Response headers already sent");
+        }
+        this.responseCode = rCode;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return connection.getRemoteAddress();
+    }
+
+    @Override
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return connection.getLocalAddress();
+    }
+
+    @Override
+    public String getProtocol() {
+        return protocol;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        attributes.put(name, value);
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        if (i != null) {
+            requestBody = i;
+        }
+        if (o != null) {
+            responseBody = o;
+        }
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return null;
+    }
+
+    private void finish() {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        int status = responseCode == -1 ? 500 : responseCode;
+        byte[] body = responseBuffer == null ? new byte[0] : responseBuffer.toByteArray();
+        StringBuilder head = new StringBuilder(128);
+        head.append("HTTP/1.1 ").append(status).append(' ').append(reasonPhrase(status)).append("\r\n");
+        for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+            for (String value : header.getValue()) {
+                head.append(header.getKey()).append(": ").append(value).append("\r\n");
+            }
+        }
+        head.append("Content-Length: ").append(body.length).append("\r\n");
+        head.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n\r\n");
+        connection.respond(head.toString().getBytes(StandardCharsets.US_ASCII), body, keepAlive);
+    }
+
+    static String reasonPhrase(int status) {
+        switch (status) {
+            case 200:
+                return "OK";
+            case 202:
+                return "Accepted";
+            case 400:
+                return "Bad Request";
+            case 404:
+                return "Not Found";
+            case 405:
+                return "Method Not Allowed";
+            case 408:
+                return "Request Timeout";
+            case 411:
+                return "Length Required";
+            case 413:
+                return "Payload Too Large";
+            case 429:
+                return "Too Many Requests";
+            case 503:
+                return "Service Unavailable";
+            case 500:
+                return "Internal Server Error";
+            default:
+                return status < 400 ? "OK" : status < 500 ? "Client Error" : "Server Error";
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package vn.vnpay.fee.controller.nio;
+
+import com.sun.net.httpserver.HttpHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * HTTP/1.1 server built on JDK selectors: one acceptor thread, a few selector threads doing
+ * all socket IO with pooled direct buffers, and the request handlers running on the worker
+ * executor. Connections are kept alive until the client closes them or they stay idle too long.
+ * Without an executor the handlers run on the selector thread and must complete the exchange themselves.
+ */
+public class NioHttpServer {
+
+    private final Logger logger = LoggerFactory.getLogger(NioHttpServer.class);
+    private final TreeMap<String, HttpHandler> contexts = new TreeMap<>();
+    private final InetSocketAddress address;
+    private final int selectorThreadCount;
+    private final int maxRequestBytes;
+    private final long idleTimeoutMillis;
+    private final BufferPool bufferPool;
+    private Executor executor;
+    private NioSelectorThread[] selectorThreads;
+    private ServerSocketChannel serverChannel;
+    private Thread acceptorThread;
+    private volatile boolean running;
+
+    public NioHttpServer(InetSocketAddress address, int selectorThreadCount, int bufferSize, int maxRequestBytes,
+                         long idleTimeoutMillis) {
+        this.address = address;
+        this.selectorThreadCount = selectorThreadCount;
+        this.maxRequestBytes = maxRequestBytes;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.bufferPool = new BufferPool(bufferSize, selectorThreadCount * 256);
+    }
+
+    public void createContext(String path, HttpHandler handler) {
+        contexts.put(path, handler);
+    }
+
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address, 1024);
+        selectorThreads = new NioSelectorThread[selectorThreadCount];
+        for (int i = 0; i < selectorThreadCount; i++) {
+            selectorThreads[i] = new NioSelectorThread(this, "nio-selector-" + (i + 1));
+            selectorThreads[i].setDaemon(true);
+            selectorThreads[i].start();
+        }
+        running = true;
+        acceptorThread = new Thread(this::accept, "nio-acceptor");
+        acceptorThread.start();
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            logger.warn("Cannot close server socket", e);
+        }
+        for (NioSelectorThread selectorThread : selectorThreads) {
+            selectorThread.shutdown();
+        }
+    }
+
+    private void accept() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.socket().setTcpNoDelay(true);
+                selectorThreads[next].register(channel);
+                next = (next + 1) % selectorThreads.length;
+            } catch (IOException e) {
+                if (running) {
+                    logger.error("Accept connection failed", e);
+                }
+            }
+        }
+    }
+
+    void dispatch(NioHttpExchange exchange) {
+        HttpHandler handler = this.findHandler(exchange.getRequestURI().getPath());
+        if (handler == null) {
+            this.sendEmpty(exchange, 404);
+            return;
+        }
+        if (executor == null) {
+            try {
+                handler.handle(exchange);
+            } catch (Exception e) {
+                logger.error("Handler failed", e);
+                exchange.close();
+            }
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    handler.handle(exchange);
+                } catch (Exception e) {
+                    logger.error("Handler failed", e);
+                } finally {
+                    exchange.close();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.sendEmpty(exchange, 503);
+        }
+    }
+
+    private HttpHandler findHandler(String path) {
+        if (path == null) {
+            return null;
+        }
+        Map.Entry<String, HttpHandler> entry = contexts.floorEntry(path);
+        while (entry != null) {
+            if (path.startsWith(entry.getKey())) {
+                return entry.getValue();
+            }
+            entry = contexts.lowerEntry(entry.getKey());
+        }
+        return null;
+    }
+
+    private void sendEmpty(NioHttpExchange exchange, int status) {
+        try {
+            exchange.sendResponseHeaders(status, -1);
+        } catch (IOException e) {
+            logger.warn("Cannot send response headers", e);
+        }
+        exchange.close();
+    }
+
+    BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    int getMaxRequestBytes() {
+        return maxRequestBytes;
+    }
+
+    long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+}
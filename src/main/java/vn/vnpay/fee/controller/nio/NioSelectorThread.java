@@ -0,0 +1,144 @@
+package vn.vnpay.fee.controller.nio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Owns a selector and the connections registered on it. Reads and writes happen on this
+ * thread only, work coming from other threads is queued and the selector woken up.
+ */
+class NioSelectorThread extends Thread {
+
+    private static final long SELECT_TIMEOUT_MILLIS = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(NioSelectorThread.class);
+    private final NioHttpServer server;
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer;
+    private volatile boolean running = true;
+
+    NioSelectorThread(NioHttpServer server, String name) throws IOException {
+        super(name);
+        this.server = server;
+        this.selector = Selector.open();
+        this.readBuffer = server.getBufferPool().acquire();
+    }
+
+    void register(SocketChannel channel) {
+        this.execute(() -> {
+            try {
+                channel.configureBlocking(false);
+                NioConnection connection = new NioConnection(channel, this);
+                connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+            } catch (IOException e) {
+                logger.warn("Cannot register connection", e);
+                closeQuietly(channel);
+            }
+        });
+    }
+
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    void dispatch(NioHttpExchange exchange) {
+        server.dispatch(exchange);
+    }
+
+    BufferPool getBufferPool() {
+        return server.getBufferPool();
+    }
+
+    int getMaxRequestBytes() {
+        return server.getMaxRequestBytes();
+    }
+
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        long lastIdleCheck = System.currentTimeMillis();
+        while (running) {
+            try {
+                selector.select(SELECT_TIMEOUT_MILLIS);
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    this.process(key);
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastIdleCheck >= SELECT_TIMEOUT_MILLIS) {
+                    this.closeIdleConnections(now);
+                    lastIdleCheck = now;
+                }
+            } catch (Exception e) {
+                logger.error("Selector loop failed", e);
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            ((NioConnection) key.attachment()).close();
+        }
+        closeQuietly(selector);
+    }
+
+    private void process(SelectionKey key) {
+        NioConnection connection = (NioConnection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                readBuffer.clear();
+                int read = connection.getChannel().read(readBuffer);
+                if (read < 0) {
+                    connection.close();
+                    return;
+                }
+                readBuffer.flip();
+                connection.onRead(readBuffer);
+            } else if (key.isWritable()) {
+                connection.onWrite();
+            }
+        } catch (IOException | CancelledKeyException e) {
+            connection.close();
+        }
+    }
+
+    private void closeIdleConnections(long now) {
+        List<NioConnection> idleConnections = new ArrayList<>();
+        for (SelectionKey key : selector.keys()) {
+            NioConnection connection = (NioConnection) key.attachment();
+            if (connection.isIdle() && now - connection.getLastActivity() > server.getIdleTimeoutMillis()) {
+                idleConnections.add(connection);
+            }
+        }
+        idleConnections.forEach(NioConnection::close);
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // nothing left to release
+        }
+    }
+}
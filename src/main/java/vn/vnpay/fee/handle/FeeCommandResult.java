@@ -0,0 +1,54 @@
+package vn.vnpay.fee.handle;
+
+import vn.vnpay.fee.common.HttpStatus;
+
+public class FeeCommandResult {
+    private String requestId;
+    private String code;
+    private String message;
+    private String commandCode;
+
+    public FeeCommandResult() {
+    }
+
+    public FeeCommandResult(String requestId) {
+        this.requestId = requestId;
+    }
+
+    public void setStatus(HttpStatus status) {
+        this.code = status.getMessageStatus();
+        this.message = status.getMessage();
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(String requestId) {
+        this.requestId = requestId;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public void setCode(String code) {
+        this.code = code;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public String getCommandCode() {
+        return commandCode;
+    }
+
+    public void setCommandCode(String commandCode) {
+        this.commandCode = commandCode;
+    }
+}
@@ -0,0 +1,203 @@
+package vn.vnpay.fee.handle;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.sun.net.httpserver.HttpExchange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads request bodies into pooled byte arrays and parses them with the Jackson streaming parser.
+ * The pool is shared rather than thread local so it stays small when requests run on virtual threads.
+ * Bodies over the size cap are refused from the Content-Length header before anything is read.
+ */
+class RequestBodyReader {
+
+    private static final int POOL_CAPACITY = 256;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private final Logger logger = LoggerFactory.getLogger(RequestBodyReader.class);
+    private final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final int bufferSize;
+    private final int maxBodyBytes;
+
+    RequestBodyReader(int bufferSize, int maxBodyBytes) {
+        this.bufferSize = bufferSize;
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    FeeCommandRequest readFeeCommandRequest(HttpExchange httpExchange) throws IOException {
+        return this.read(httpExchange, RequestBodyReader::parseFeeCommandRequest);
+    }
+
+    FeeCommandRequest readFeeCommandRequest(byte[] body) throws IOException {
+        return parse(body, body.length, RequestBodyReader::parseFeeCommandRequest);
+    }
+
+    List<FeeCommandRequest> readFeeCommandRequests(HttpExchange httpExchange) throws IOException {
+        return this.read(httpExchange, parser -> {
+            if (parser.currentToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Expected an array of fee command");
+            }
+            List<FeeCommandRequest> feeCommandRequests = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                feeCommandRequests.add(parseFeeCommandRequest(parser));
+            }
+            return feeCommandRequests;
+        });
+    }
+
+    private <T> T read(HttpExchange httpExchange, BodyParser<T> bodyParser) throws IOException {
+        long contentLength = this.getContentLength(httpExchange);
+        if (contentLength > maxBodyBytes) {
+            throw new RequestBodyTooLargeException(maxBodyBytes);
+        }
+        byte[] buffer = contentLength > bufferSize ? new byte[(int) contentLength] : this.acquire();
+        try {
+            InputStream is = httpExchange.getRequestBody();
+            int length = 0;
+            for (int read = is.read(buffer, 0, buffer.length); read != -1;
+                 read = is.read(buffer, length, buffer.length - length)) {
+                length += read;
+                if (length < buffer.length) {
+                    continue;
+                }
+                int next = is.read();
+                if (next == -1) {
+                    break;
+                }
+                if (length >= maxBodyBytes) {
+                    throw new RequestBodyTooLargeException(maxBodyBytes);
+                }
+                byte[] grown = Arrays.copyOf(buffer, Math.min(maxBodyBytes, length * 2));
+                this.release(buffer);
+                buffer = grown;
+                buffer[length++] = (byte) next;
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Handle {} request with requestBody: {}", httpExchange.getRequestMethod(),
+                        new String(buffer, 0, length, StandardCharsets.UTF_8));
+            }
+            return parse(buffer, length, bodyParser);
+        } finally {
+            this.release(buffer);
+        }
+    }
+
+    private static <T> T parse(byte[] buffer, int length, BodyParser<T> bodyParser) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(buffer, 0, length)) {
+            parser.nextToken();
+            return bodyParser.parse(parser);
+        }
+    }
+
+    private long getContentLength(HttpExchange httpExchange) {
+        String contentLength = httpExchange.getRequestHeaders().getFirst("Content-Length");
+        if (contentLength == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private byte[] acquire() {
+        byte[] buffer = buffers.poll();
+        if (buffer == null) {
+            return new byte[bufferSize];
+        }
+        pooled.decrementAndGet();
+        return buffer;
+    }
+
+    private void release(byte[] buffer) {
+        if (buffer.length != bufferSize) {
+            return;
+        }
+        if (pooled.incrementAndGet() <= POOL_CAPACITY) {
+            buffers.offer(buffer);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+
+    private static FeeCommandRequest parseFeeCommandRequest(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a fee command object");
+        }
+        FeeCommandRequest feeCommandRequest = new FeeCommandRequest();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "requestId":
+                    feeCommandRequest.setRequestId(readString(parser));
+                    break;
+                case "requestTime":
+                    feeCommandRequest.setRequestTime(readString(parser));
+                    break;
+                case "commandCode":
+                    feeCommandRequest.setCommandCode(readString(parser));
+                    break;
+                case "totalRecord":
+                    feeCommandRequest.setTotalRecord(readNumber(parser).getIntValue());
+                    break;
+                case "totalFee":
+                    feeCommandRequest.setTotalFee(readNumber(parser).getDoubleValue());
+                    break;
+                case "createdUser":
+                    feeCommandRequest.setCreatedUser(readString(parser));
+                    break;
+                case "createdDate":
+                    feeCommandRequest.setCreatedDate(readString(parser));
+                    break;
+                default:
+                    throw new JsonParseException(parser, "Unrecognized field " + field);
+            }
+        }
+        if (parser.currentToken() != JsonToken.END_OBJECT) {
+            throw new JsonParseException(parser, "Unexpected token " + parser.currentToken());
+        }
+        return feeCommandRequest;
+    }
+
+    /**
+     * Objects and arrays are refused rather than skipped, their fields must not be taken for fields of
+     * the fee command.
+     */
+    private static String readString(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.VALUE_STRING) {
+            throw new JsonParseException(parser, "Expected a string value of " + parser.getCurrentName());
+        }
+        return parser.getText();
+    }
+
+    private static JsonParser readNumber(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NUMBER_FLOAT) {
+            throw new JsonParseException(parser, "Expected a number value of " + parser.getCurrentName());
+        }
+        return parser;
+    }
+
+    private interface BodyParser<T> {
+        T parse(JsonParser parser) throws IOException;
+    }
+}
@@ -0,0 +1,10 @@
+package vn.vnpay.fee.handle;
+
+import java.io.IOException;
+
+class RequestBodyTooLargeException extends IOException {
+
+    RequestBodyTooLargeException(long maxBodyBytes) {
+        super("Request body is larger than " + maxBodyBytes + " bytes");
+    }
+}
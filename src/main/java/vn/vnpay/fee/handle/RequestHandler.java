@@ -1,36 +1,90 @@
 package vn.vnpay.fee.handle;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.exceptions.JedisConnectionException;
+import org.slf4j.MDC;
+import vn.vnpay.fee.annotation.CustomValue;
+import vn.vnpay.fee.annotation.ValueInjector;
 import vn.vnpay.fee.bean.FeeCommand;
+import vn.vnpay.fee.common.CommandStatus;
 import vn.vnpay.fee.common.CommonUtil;
-import vn.vnpay.fee.common.GeneralResponse;
 import vn.vnpay.fee.common.HttpStatus;
+import vn.vnpay.fee.common.Readiness;
 import vn.vnpay.fee.common.RequestMethod;
-import vn.vnpay.fee.config.redis.RedisConfig;
+import vn.vnpay.fee.config.reload.ConfigWatcher;
+import vn.vnpay.fee.controller.AdmissionController;
+import vn.vnpay.fee.job.FeeCommandPipeline;
+import vn.vnpay.fee.service.CommandStatusService;
+import vn.vnpay.fee.service.IdempotencyStore;
 import vn.vnpay.fee.service.TransactionService;
+import vn.vnpay.fee.service.impl.BloomFilterIdempotencyStore;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 
 public class RequestHandler implements HttpHandler {
+    private static final String STATUS_PATH = "/status";
+    private static final String METRICS_PATH = "/metrics";
+    private static final String READY_PATH = "/ready";
+    private static final String BATCH_INIT_PATH = "/init/batch";
     private final Logger logger = LoggerFactory.getLogger(RequestHandler.class);
-    private final ThreadLocal<String> logIdThreadLocal = new ThreadLocal<>();
+    private final Logger accessLogger = LoggerFactory.getLogger(CommonUtil.ACCESS_LOGGER);
+    @CustomValue(value = "fee.init.batch.maxSize", reloadable = true, min = 1)
+    private volatile int maxBatchSize;
+    @CustomValue("server.request.bufferSize")
+    private int requestBufferSize;
+    @CustomValue("server.request.maxBodyBytes")
+    private int maxRequestBodyBytes;
+    private static final byte[] WARM_UP_BODY = ("{\"requestId\":\"warm-up\",\"requestTime\":\"20200101000000\","
+            + "\"commandCode\":\"1\",\"totalRecord\":1,\"totalFee\":1.0,\"createdUser\":\"warm-up\","
+            + "\"createdDate\":\"20200101000000\"}").getBytes(StandardCharsets.UTF_8);
+    private final RequestBodyReader requestBodyReader;
+    private final TransactionService transactionService;
+    private final IdempotencyStore idempotencyStore;
+
+    public RequestHandler() {
+        this(null, null);
+    }
+
+    /**
+     * Runs the handler against the given stores instead of the configured ones, a null store falls
+     * back to the configured one.
+     */
+    RequestHandler(TransactionService transactionService, IdempotencyStore idempotencyStore) {
+        this.transactionService = transactionService;
+        this.idempotencyStore = idempotencyStore;
+        try {
+            ValueInjector.injectValues(this);
+            ConfigWatcher.getInstance().register(this);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot inject configuration into RequestHandler", e);
+        }
+        this.requestBodyReader = new RequestBodyReader(requestBufferSize, maxRequestBodyBytes);
+    }
 
     @Override
     public void handle(HttpExchange exchange) {
+        long start = System.nanoTime();
         String requestMethod = exchange.getRequestMethod();
-        String logId = CommonUtil.generateLogId();
-        logIdThreadLocal.set(logId);
-        logger.info("[{}] - Received {} request with endpoint: {}", logId, requestMethod, exchange.getRequestURI());
+        if (!Readiness.isReady()) {
+            // /ready included, and before the log id which needs the snowflake node id of a started node
+            this.sendResponse(exchange, HttpStatus.SERVICE_UNAVAILABLE, null);
+            this.logAccess(exchange, requestMethod, start);
+            return;
+        }
+        MDC.put(CommonUtil.LOG_ID, CommonUtil.generateLogId());
+        logger.debug("Received {} request with endpoint: {}", requestMethod, exchange.getRequestURI());
         try {
             if (requestMethod.equalsIgnoreCase(RequestMethod.GET.name())) {
                 this.handleGet(exchange);
@@ -45,135 +99,300 @@ public class RequestHandler implements HttpHandler {
                         HttpStatus.INTERNAL_SERVER_ERROR.getMessageStatus());
             }
         } catch (IOException e) {
-            logger.error("[{}] - Handle request fail ", logId, e);
+            logger.error("Handle request fail", e);
+        } finally {
+            this.logAccess(exchange, requestMethod, start);
+            MDC.remove(CommonUtil.LOG_ID);
+        }
+    }
+
+    /**
+     * Runs request parsing and response encoding on a sample body, without touching any store, so
+     * these paths are compiled before the node reports ready.
+     */
+    public void warmUp(int iterations) throws IOException {
+        for (int i = 0; i < iterations; i++) {
+            FeeCommandRequest feeCommandRequest = requestBodyReader.readFeeCommandRequest(WARM_UP_BODY);
+            this.isExpiredRequestTime(feeCommandRequest.getRequestTime());
+            Long commandCode = this.parseCommandCode(feeCommandRequest.getCommandCode());
+            for (HttpStatus status : HttpStatus.values()) {
+                ResponseWriter.toBytes(status, String.valueOf(commandCode));
+            }
+        }
+    }
+
+    private void logAccess(HttpExchange exchange, String requestMethod, long start) {
+        if (accessLogger.isInfoEnabled()) {
+            accessLogger.info("{} {} {} {} {}ms", exchange.getRemoteAddress().getAddress().getHostAddress(),
+                    requestMethod, exchange.getRequestURI().getPath(), exchange.getResponseCode(),
+                    (System.nanoTime() - start) / 1_000_000);
         }
     }
 
     private void handleGet(HttpExchange httpExchange) throws IOException {
         Map<String, List<String>> params = CommonUtil.splitQuery(httpExchange.getRequestURI().getRawQuery());
+        if (STATUS_PATH.equals(httpExchange.getRequestURI().getPath())) {
+            this.handleGetStatus(httpExchange, params);
+            return;
+        }
+        if (METRICS_PATH.equals(httpExchange.getRequestURI().getPath())) {
+            this.handleGetMetrics(httpExchange);
+            return;
+        }
+        if (READY_PATH.equals(httpExchange.getRequestURI().getPath())) {
+            this.sendResponse(httpExchange, HttpStatus.SUCCESS, null);
+            return;
+        }
         String response = "GET request received. Params: " + params;
         this.sendResponse(httpExchange, response, null, HttpStatus.SUCCESS.getCode(),
                 HttpStatus.SUCCESS.getMessageStatus());
     }
 
+    private void handleGetStatus(HttpExchange httpExchange, Map<String, List<String>> params) {
+        List<String> commandCodes = params.get("commandCode");
+        Long commandCode = commandCodes == null || commandCodes.isEmpty() ? null
+                : this.parseCommandCode(commandCodes.get(0));
+        if (commandCode == null) {
+            this.sendResponse(httpExchange, HttpStatus.BAD_REQUEST, null);
+            return;
+        }
+        CommandStatus status = CommandStatusService.getInstance().getStatus(commandCode);
+        logger.debug("Get status of commandCode: {} is {}", commandCode, status);
+        if (status == null) {
+            this.sendResponse(httpExchange, HttpStatus.NOT_FOUND, null);
+        } else {
+            this.sendResponse(httpExchange, HttpStatus.SUCCESS, status.name());
+        }
+    }
+
+    private void handleGetMetrics(HttpExchange httpExchange) {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        BloomFilterIdempotencyStore bloomFilterStore = BloomFilterIdempotencyStore.getInstance();
+        if (bloomFilterStore != null) {
+            metrics.putAll(bloomFilterStore.getMetrics());
+        }
+        AdmissionController admissionController = AdmissionController.getInstance();
+        if (admissionController != null) {
+            metrics.putAll(admissionController.getMetrics());
+        }
+        this.sendResponse(httpExchange, HttpStatus.SUCCESS, metrics);
+    }
+
     private void handlePost(HttpExchange httpExchange) {
-        long start = System.currentTimeMillis();
-        String logId = logIdThreadLocal.get();
-        logger.info("[{}] - Start handle request POST in RequestHandler", logId);
+        if (BATCH_INIT_PATH.equals(httpExchange.getRequestURI().getPath())) {
+            this.handlePostBatch(httpExchange);
+            return;
+        }
         try {
-            this.logClientIP(httpExchange);
             FeeCommandRequest feeCommandRequest = this.getPaymentRequestBody(httpExchange);
 
             boolean isExpired = this.checkIfExpiredRequest(feeCommandRequest, httpExchange);
-            boolean isExistRequestId = this.checkIfExistsRequestId(feeCommandRequest.getRequestId(), httpExchange, isExpired);
 
-            if (!isExpired && !isExistRequestId) {
-                logger.info("[{}] - Start process fee command ", logId);
+            if (!isExpired && this.reserveRequestId(feeCommandRequest.getRequestId(), httpExchange)) {
                 this.processInitFee(httpExchange, feeCommandRequest);
             }
+        } catch (RequestBodyTooLargeException e) {
+            this.sendPayloadTooLarge(httpExchange, e);
+        } catch (JsonProcessingException e) {
+            this.sendMalformedBody(httpExchange, e);
         } catch (Exception e) {
-            logger.error("[{}] - Error processing payment request", logId, e);
-            this.sendResponse(httpExchange, HttpStatus.INTERNAL_SERVER_ERROR.getMessage(), null,
-                    HttpStatus.INTERNAL_SERVER_ERROR.getCode(), HttpStatus.INTERNAL_SERVER_ERROR.getMessageStatus());
+            logger.error("Error processing payment request", e);
+            this.sendResponse(httpExchange, HttpStatus.INTERNAL_SERVER_ERROR, null);
         } finally {
-            logIdThreadLocal.remove();
             httpExchange.close();
-            long end = System.currentTimeMillis();
-            logger.info("[{}] - Process request in RequestHandler take {} millisecond ", logId, (end - start));
         }
     }
 
-    private void logClientIP(HttpExchange httpExchange) {
-        String logId = logIdThreadLocal.get();
+    private void handlePostBatch(HttpExchange httpExchange) {
         try {
-            String clientIP = httpExchange.getRemoteAddress().getAddress().getHostAddress();
-            logger.info("[{}] - Handle request with clientIp {} ", logId, clientIP);
+            List<FeeCommandRequest> feeCommandRequests = requestBodyReader.readFeeCommandRequests(httpExchange);
+            logger.debug("Handle POST batch request with {} fee command", feeCommandRequests.size());
+            if (feeCommandRequests.isEmpty() || feeCommandRequests.size() > maxBatchSize) {
+                logger.info("Batch size must be between 1 and {}", maxBatchSize);
+                this.sendResponse(httpExchange, HttpStatus.BAD_REQUEST, null);
+                return;
+            }
+            List<FeeCommandResult> results = this.processInitFeeBatch(feeCommandRequests);
+            this.sendResponse(httpExchange, HttpStatus.SUCCESS, results);
+        } catch (RequestBodyTooLargeException e) {
+            this.sendPayloadTooLarge(httpExchange, e);
+        } catch (JsonProcessingException e) {
+            this.sendMalformedBody(httpExchange, e);
         } catch (Exception e) {
-            logger.error("[{}] - Error getting client IP", logId, e);
+            logger.error("Error processing batch request", e);
+            this.sendResponse(httpExchange, HttpStatus.INTERNAL_SERVER_ERROR, null);
+        } finally {
+            httpExchange.close();
+        }
+    }
+
+    /**
+     * Validates every item, reserves all fresh request ids in one redis round trip and persists the
+     * accepted commands in a single database transaction.
+     */
+    private List<FeeCommandResult> processInitFeeBatch(List<FeeCommandRequest> feeCommandRequests) {
+        List<FeeCommandResult> results = new ArrayList<>(feeCommandRequests.size());
+        List<String> requestIds = new ArrayList<>(feeCommandRequests.size());
+        List<Integer> requestIndexes = new ArrayList<>(feeCommandRequests.size());
+        Set<String> batchRequestIds = new HashSet<>();
+        for (int i = 0; i < feeCommandRequests.size(); i++) {
+            FeeCommandRequest feeCommandRequest = feeCommandRequests.get(i);
+            FeeCommandResult result = new FeeCommandResult(feeCommandRequest.getRequestId());
+            results.add(result);
+            if (feeCommandRequest.getRequestId() == null || feeCommandRequest.getRequestTime() == null) {
+                result.setStatus(HttpStatus.BAD_REQUEST);
+            } else if (this.isExpiredRequestTime(feeCommandRequest.getRequestTime())) {
+                result.setStatus(HttpStatus.EXPIRED_REQUEST);
+            } else if (!batchRequestIds.add(feeCommandRequest.getRequestId())) {
+                result.setStatus(HttpStatus.DUPLICATE_REQUEST_ID);
+            } else {
+                requestIds.add(feeCommandRequest.getRequestId());
+                requestIndexes.add(i);
+            }
+        }
+        if (requestIds.isEmpty()) {
+            return results;
+        }
+        boolean[] reserved = this.getIdempotencyStore().reserveAll(requestIds);
+        List<FeeCommand> feeCommands = new ArrayList<>(requestIds.size());
+        List<FeeCommandResult> acceptedResults = new ArrayList<>(requestIds.size());
+        for (int i = 0; i < reserved.length; i++) {
+            FeeCommandResult result = results.get(requestIndexes.get(i));
+            if (!reserved[i]) {
+                result.setStatus(HttpStatus.DUPLICATE_REQUEST_ID);
+                continue;
+            }
+            FeeCommandRequest feeCommandRequest = feeCommandRequests.get(requestIndexes.get(i));
+            FeeCommand feeCommand = new FeeCommand();
+            feeCommand.setTotalFee(feeCommandRequest.getTotalFee());
+            feeCommand.setTotalRecord(feeCommandRequest.getTotalRecord());
+            feeCommands.add(feeCommand);
+            acceptedResults.add(result);
+        }
+        if (feeCommands.isEmpty()) {
+            return results;
+        }
+        boolean resultInitFee = this.getTransactionService().initFeeCommands(feeCommands);
+        logger.info("Init {} fee command in batch with result: {}", feeCommands.size(), resultInitFee);
+        for (int i = 0; i < acceptedResults.size(); i++) {
+            FeeCommandResult result = acceptedResults.get(i);
+            if (resultInitFee) {
+                result.setStatus(HttpStatus.SUCCESS);
+                result.setCommandCode(String.valueOf(feeCommands.get(i).getCommandCode()));
+            } else {
+                result.setStatus(HttpStatus.FAILURE);
+            }
+        }
+        return results;
+    }
+
+    private boolean isExpiredRequestTime(String requestTime) {
+        try {
+            return CommonUtil.isExpired(requestTime);
+        } catch (DateTimeParseException e) {
+            return true;
         }
     }
 
     private FeeCommandRequest getPaymentRequestBody(HttpExchange httpExchange) throws IOException {
-        String logId = logIdThreadLocal.get();
-        InputStream is = httpExchange.getRequestBody();
-        byte[] bytes = CommonUtil.getBytesFromInputStream(is);
-        FeeCommandRequest feeCommandRequest = CommonUtil.bytesToObject(bytes, FeeCommandRequest.class);
-        String responseLog = CommonUtil.objectToJson(feeCommandRequest);
-        logger.info("[{}] - Handle {} request with requestBody: {} ", logId, httpExchange.getRequestMethod(), responseLog);
-        return feeCommandRequest;
+        return requestBodyReader.readFeeCommandRequest(httpExchange);
     }
 
     private void processInitFee(HttpExchange httpExchange, FeeCommandRequest feeCommandRequest) {
-        String logId = logIdThreadLocal.get();
-        this.pushKeyToRedis(feeCommandRequest);
-        String endpoint = httpExchange.getRequestURI().getPath();
-        logger.info("[{}] - Process request with endpoint: {} ", logId, endpoint);
-        TransactionService transactionService = TransactionService.getInstance();
-        this.initFeeCommand(transactionService, feeCommandRequest, httpExchange);
+        this.initFeeCommand(this.getTransactionService(), feeCommandRequest, httpExchange);
     }
 
 
     private void initFeeCommand(TransactionService transactionService, FeeCommandRequest feeCommandRequest,
                                 HttpExchange httpExchange) {
-        String logId = logIdThreadLocal.get();
         FeeCommand feeCommand = new FeeCommand();
         feeCommand.setTotalFee(feeCommandRequest.getTotalFee());
         feeCommand.setTotalRecord(feeCommandRequest.getTotalRecord());
-        boolean resultInitFee = transactionService.initFeeCommand(feeCommand, logId);
+        FeeCommandPipeline feeCommandPipeline = FeeCommandPipeline.getInstance();
+        if (feeCommandPipeline.isEnabled()) {
+            this.submitFeeCommand(feeCommandPipeline, feeCommand, httpExchange);
+            return;
+        }
+        boolean resultInitFee = transactionService.initFeeCommand(feeCommand);
+        logger.info("Init fee command for requestId: {} with result: {}", feeCommandRequest.getRequestId(),
+                resultInitFee);
         if (resultInitFee) {
-            logger.info("[{}] - Init fee command successfully", logId);
-            this.sendResponse(httpExchange, HttpStatus.SUCCESS.getMessage(), feeCommand.getCommandCode(),
-                    HttpStatus.SUCCESS.getCode(), HttpStatus.SUCCESS.getMessageStatus());
+            this.sendResponse(httpExchange, HttpStatus.SUCCESS, String.valueOf(feeCommand.getCommandCode()));
         } else {
-            logger.info("[{}] - Init fee command false", logId);
-            this.sendResponse(httpExchange, HttpStatus.FAILURE.getMessage(), null,
-                    HttpStatus.FAILURE.getCode(), HttpStatus.FAILURE.getMessageStatus());
+            this.sendResponse(httpExchange, HttpStatus.FAILURE, null);
         }
 
     }
 
+    private void submitFeeCommand(FeeCommandPipeline feeCommandPipeline, FeeCommand feeCommand,
+                                  HttpExchange httpExchange) {
+        feeCommand.setCommandCode(CommonUtil.getNextId());
+        if (feeCommandPipeline.submit(feeCommand)) {
+            logger.debug("Accept fee command with commandCode: {}", feeCommand.getCommandCode());
+            this.sendResponse(httpExchange, HttpStatus.ACCEPTED, String.valueOf(feeCommand.getCommandCode()));
+        } else {
+            this.sendResponse(httpExchange, HttpStatus.SERVICE_UNAVAILABLE, null);
+        }
+    }
+
     private void handlePut(HttpExchange httpExchange) throws IOException {
-        long start = System.currentTimeMillis();
-        String logId = logIdThreadLocal.get();
-        logger.info("[{}] - Start handle request PUT in RequestHandler", logId);
         try {
-            this.logClientIP(httpExchange);
             FeeCommandRequest feeCommandRequest = this.getPaymentRequestBody(httpExchange);
 
+            Long commandCode = this.parseCommandCode(feeCommandRequest.getCommandCode());
+            if (commandCode == null) {
+                this.sendResponse(httpExchange, HttpStatus.BAD_REQUEST, null);
+                return;
+            }
+
             boolean isExpired = this.checkIfExpiredRequest(feeCommandRequest, httpExchange);
-            boolean isExistRequestId = this.checkIfExistsRequestId(feeCommandRequest.getRequestId(), httpExchange, isExpired);
 
-            if (!isExpired && !isExistRequestId) {
-                boolean resultUpdateFee = this.processUpdateFee(httpExchange, feeCommandRequest);
-                if (resultUpdateFee) {
-                    this.sendResponse(httpExchange, HttpStatus.SUCCESS.getMessage(), null,
-                            HttpStatus.SUCCESS.getCode(), HttpStatus.SUCCESS.getMessageStatus());
+            if (!isExpired && this.reserveRequestId(feeCommandRequest.getRequestId(), httpExchange)) {
+                int updatedRecord = this.processUpdateFee(commandCode);
+                if (updatedRecord != TransactionService.UPDATE_FAILED) {
+                    this.sendResponse(httpExchange, HttpStatus.SUCCESS, String.valueOf(updatedRecord));
                 } else {
-                    this.sendResponse(httpExchange, HttpStatus.FAILURE.getMessage(), null,
-                            HttpStatus.FAILURE.getCode(), HttpStatus.FAILURE.getMessageStatus());
+                    this.sendResponse(httpExchange, HttpStatus.FAILURE, null);
                 }
             }
 
+        } catch (RequestBodyTooLargeException e) {
+            this.sendPayloadTooLarge(httpExchange, e);
+        } catch (JsonProcessingException e) {
+            this.sendMalformedBody(httpExchange, e);
         } catch (Exception e) {
-            logger.error("[{}] - Error processing update fee", logId, e);
-            this.sendResponse(httpExchange, HttpStatus.INTERNAL_SERVER_ERROR.getMessage(), null,
-                    HttpStatus.INTERNAL_SERVER_ERROR.getCode(), HttpStatus.INTERNAL_SERVER_ERROR.getMessageStatus());
+            logger.error("Error processing update fee", e);
+            this.sendResponse(httpExchange, HttpStatus.INTERNAL_SERVER_ERROR, null);
         } finally {
-            logIdThreadLocal.remove();
             httpExchange.close();
-            long end = System.currentTimeMillis();
-            logger.info("[{}] - Process PUT request to update fee in RequestHandler take {} millisecond ", logId, (end - start));
         }
     }
 
-    private boolean processUpdateFee(HttpExchange httpExchange, FeeCommandRequest feeCommandRequest) {
-        String logId = logIdThreadLocal.get();
-        logger.info("[{}] - Start process update fee transaction ", logId);
-        this.pushKeyToRedis(feeCommandRequest);
-        String endpoint = httpExchange.getRequestURI().getPath();
-        logger.info("[{}] - Process request update fee with endpoint: {} ", logId, endpoint);
-        TransactionService transactionService = TransactionService.getInstance();
-        return transactionService.updateFee(feeCommandRequest.getCommandCode(), logId);
+    private int processUpdateFee(long commandCode) {
+        return this.getTransactionService().updateFee(commandCode);
+    }
+
+    private TransactionService getTransactionService() {
+        return transactionService != null ? transactionService : TransactionService.getInstance();
+    }
+
+    private IdempotencyStore getIdempotencyStore() {
+        return idempotencyStore != null ? idempotencyStore : IdempotencyStore.getInstance();
+    }
+
+    /**
+     * Command codes are stored as numbers but travel as strings in the API, anything that is not a
+     * number cannot match a stored command.
+     */
+    private Long parseCommandCode(String commandCode) {
+        if (commandCode == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(commandCode.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
     private void handleDelete(HttpExchange httpExchange) {
         String response = "DELETE request received";
@@ -182,106 +401,52 @@ public class RequestHandler implements HttpHandler {
 
 
     private boolean checkIfExpiredRequest(FeeCommandRequest feeCommandRequest, HttpExchange httpExchange) {
-        String logId = logIdThreadLocal.get();
         boolean isExpired;
         isExpired = CommonUtil.isExpired(feeCommandRequest.getRequestTime());
         if (isExpired) {
-            logger.info("[{}] - Request with requestId: {} is expired", logId, feeCommandRequest.getRequestId());
-            this.sendResponse(httpExchange, HttpStatus.EXPIRED_REQUEST.getMessage(), null,
-                    HttpStatus.EXPIRED_REQUEST.getCode(), HttpStatus.EXPIRED_REQUEST.getMessageStatus());
+            logger.info("Request with requestId: {} is expired", feeCommandRequest.getRequestId());
+            this.sendResponse(httpExchange, HttpStatus.EXPIRED_REQUEST, null);
         }
         return isExpired;
     }
 
-    private boolean checkIfExistsRequestId(String requestId, HttpExchange httpExchange, boolean isExpired) {
-        String logId = logIdThreadLocal.get();
-        boolean isExistsRequestId;
-        isExistsRequestId = this.isExistKey(requestId);
-        if (isExistsRequestId && !isExpired) {
-            logger.info("[{}] -Request with requestId: {} is duplicated", logId, requestId);
-            this.sendResponse(httpExchange, HttpStatus.DUPLICATE_REQUEST_ID.getMessage(), null,
-                    HttpStatus.DUPLICATE_REQUEST_ID.getCode(), HttpStatus.DUPLICATE_REQUEST_ID.getMessageStatus());
+    private boolean reserveRequestId(String requestId, HttpExchange httpExchange) {
+        boolean isReserved = this.getIdempotencyStore().reserve(requestId);
+        if (!isReserved) {
+            logger.info("Request with requestId: {} is duplicated", requestId);
+            this.sendResponse(httpExchange, HttpStatus.DUPLICATE_REQUEST_ID, null);
         }
-        return isExistsRequestId;
+        return isReserved;
     }
 
-
-    private boolean isExistKey(String requestId) {
-        String logId = logIdThreadLocal.get();
-        RedisConfig redisConfig = RedisConfig.getInstance();
-        Jedis jedis = null;
-        try {
-            jedis = redisConfig.getJedisPool().getResource();
-            return jedis.exists(requestId);
-        } catch (JedisConnectionException e) {
-            logger.error("[{}] - Error connecting to Redis", logId, e);
-            return false;
-        } catch (Exception e) {
-            logger.error("[{}] - An occur error when check exist requestId on redis", logId, e);
-            return false;
-        } finally {
-            if (jedis != null) {
-                redisConfig.returnConnection(jedis);
-            }
-        }
+    private void sendPayloadTooLarge(HttpExchange httpExchange, RequestBodyTooLargeException e) {
+        logger.info(e.getMessage());
+        this.sendResponse(httpExchange, HttpStatus.PAYLOAD_TOO_LARGE, null);
     }
 
-    private void pushKeyToRedis(FeeCommandRequest feeCommand) {
-        String logId = logIdThreadLocal.get();
-        boolean resultPushKeyToRedis = this.pushRedis(feeCommand.getRequestId());
-        if (!resultPushKeyToRedis) {
-            logger.info("[{}] - Push requestId to redis fail ", logId);
-        }
+    private void sendMalformedBody(HttpExchange httpExchange, JsonProcessingException e) {
+        logger.info("Malformed request body: {}", e.getOriginalMessage());
+        this.sendResponse(httpExchange, HttpStatus.BAD_REQUEST, null);
     }
 
-    private boolean pushRedis(String requestId) {
-        String logId = logIdThreadLocal.get();
-        RedisConfig redisConfig = RedisConfig.getInstance();
-        Jedis jedis = null;
+    private void sendResponse(HttpExchange httpExchange, HttpStatus status, Object data) {
         try {
-            jedis = redisConfig.getJedisPool().getResource();
-            String resultPushMessage = "";
-            if (jedis != null) {
-                long timeToLife = CommonUtil.processTimeToLife();
-                resultPushMessage = jedis.setex(requestId, timeToLife, "");
-            }
-            boolean isPushMessageSuccessfully = "OK".equalsIgnoreCase(resultPushMessage);
-            if (isPushMessageSuccessfully) {
-                logger.info("[{}] - Push message with requestId : {} to Redis successfully !", logId,
-                        requestId);
-            }
-            return isPushMessageSuccessfully;
-        } catch (JedisConnectionException e) {
-            logger.error("[{}] - Error connecting to Redis", logId, e);
-            return false;
-        } catch (Exception e) {
-            logger.error("[{}] - Error push message to redis", logId, e);
-            return false;
-        } finally {
-            if (jedis != null) {
-                redisConfig.returnConnection(jedis);
-            }
+            this.writeResponse(httpExchange, status.getCode(), ResponseWriter.toBytes(status, data));
+        } catch (IOException e) {
+            logger.error("Occur error when send response to client", e);
         }
     }
 
-    private void sendResponse(HttpExchange httpExchange, String responseMessage, String data, int statusCode, String statusMessage) {
-        String logId = logIdThreadLocal.get();
+    private void sendResponse(HttpExchange httpExchange, String responseMessage, Object data, int statusCode, String statusMessage) {
         try {
-            logger.info("[{}] - Start send response to client ", logId);
-            GeneralResponse<String> generalResponse = new GeneralResponse<>();
-            httpExchange.getResponseHeaders().set("Content-Type", "application/json");
-            logger.info("[{}] - Send response to client with Content-Type : application/json", logId);
-            generalResponse.setData(data);
-            generalResponse.setMessage(responseMessage);
-            generalResponse.setCode(statusMessage);
-            String responseString = CommonUtil.objectToJson(generalResponse);
-            httpExchange.sendResponseHeaders(statusCode, responseString.length());
-            OutputStream os = httpExchange.getResponseBody();
-            os.write(responseString.getBytes());
-            os.close();
-            logger.info("[{}] - Send response to client successfully with response: {} ", logId, responseString);
+            this.writeResponse(httpExchange, statusCode, ResponseWriter.toBytes(statusMessage, responseMessage, data));
         } catch (IOException e) {
-            logger.error("[{}] - Occur error when send response to client", logId, e);
+            logger.error("Occur error when send response to client", e);
         }
     }
+
+    private void writeResponse(HttpExchange httpExchange, int statusCode, byte[] body) throws IOException {
+        ResponseWriter.write(httpExchange, statusCode, body);
+        logger.debug("Send response to client successfully with status: {} and {} bytes", statusCode, body.length);
+    }
 }
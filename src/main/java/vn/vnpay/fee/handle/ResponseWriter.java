@@ -0,0 +1,101 @@
+package vn.vnpay.fee.handle;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.sun.net.httpserver.HttpExchange;
+import vn.vnpay.fee.common.CommonUtil;
+import vn.vnpay.fee.common.HttpStatus;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Writes {@link vn.vnpay.fee.common.GeneralResponse} bodies without building the object. The
+ * {@code {"code":..,"message":..,"data":} prefix of every {@link HttpStatus} is encoded once, only the
+ * data is appended per response. Plain strings such as a commandCode are copied as is, lists and maps
+ * still go through Jackson.
+ */
+public final class ResponseWriter {
+
+    private static final String CONTENT_TYPE = "application/json";
+    private static final byte[] NULL_DATA = "null}".getBytes(StandardCharsets.UTF_8);
+    private static final Map<HttpStatus, byte[]> PREFIXES = new EnumMap<>(HttpStatus.class);
+
+    static {
+        for (HttpStatus status : HttpStatus.values()) {
+            PREFIXES.put(status, prefix(status.getMessageStatus(), status.getMessage()));
+        }
+    }
+
+    private ResponseWriter() {
+    }
+
+    public static byte[] toBytes(HttpStatus status, Object data) throws JsonProcessingException {
+        return toBytes(PREFIXES.get(status), data);
+    }
+
+    public static byte[] toBytes(String messageStatus, String message, Object data) throws JsonProcessingException {
+        return toBytes(prefix(messageStatus, message), data);
+    }
+
+    public static void write(HttpExchange httpExchange, int statusCode, byte[] body) throws IOException {
+        httpExchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        httpExchange.sendResponseHeaders(statusCode, body.length);
+        try (OutputStream os = httpExchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private static byte[] toBytes(byte[] prefix, Object data) throws JsonProcessingException {
+        if (data == null) {
+            byte[] body = new byte[prefix.length + NULL_DATA.length];
+            System.arraycopy(prefix, 0, body, 0, prefix.length);
+            System.arraycopy(NULL_DATA, 0, body, prefix.length, NULL_DATA.length);
+            return body;
+        }
+        if (data instanceof String && isPlainAscii((String) data)) {
+            String value = (String) data;
+            byte[] body = new byte[prefix.length + value.length() + 3];
+            System.arraycopy(prefix, 0, body, 0, prefix.length);
+            int position = prefix.length;
+            body[position++] = '"';
+            for (int i = 0; i < value.length(); i++) {
+                body[position++] = (byte) value.charAt(i);
+            }
+            body[position++] = '"';
+            body[position] = '}';
+            return body;
+        }
+        byte[] json = CommonUtil.objectToJson(data).getBytes(StandardCharsets.UTF_8);
+        byte[] body = new byte[prefix.length + json.length + 1];
+        System.arraycopy(prefix, 0, body, 0, prefix.length);
+        System.arraycopy(json, 0, body, prefix.length, json.length);
+        body[body.length - 1] = '}';
+        return body;
+    }
+
+    /**
+     * @return true when the string needs no JSON escaping and encodes to one byte per char
+     */
+    private static boolean isPlainAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c > 0x7e || c == '"' || c == '\\') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] prefix(String messageStatus, String message) {
+        try {
+            return ("{\"code\":" + CommonUtil.objectToJson(messageStatus)
+                    + ",\"message\":" + CommonUtil.objectToJson(message)
+                    + ",\"data\":").getBytes(StandardCharsets.UTF_8);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot encode response prefix", e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package vn.vnpay.fee.job;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import vn.vnpay.fee.annotation.CustomValue;
+import vn.vnpay.fee.annotation.ValueInjector;
+import vn.vnpay.fee.bean.FeeCommand;
+import vn.vnpay.fee.common.CommandStatus;
+import vn.vnpay.fee.common.CommonUtil;
+import vn.vnpay.fee.service.CommandStatusService;
+import vn.vnpay.fee.service.TransactionService;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persists accepted fee commands in the background so POST /init can answer before the
+ * transactions are written. The queue is bounded, a full queue rejects the command.
+ */
+public class FeeCommandPipeline {
+    private static volatile FeeCommandPipeline instance;
+    private final Logger logger = LoggerFactory.getLogger(FeeCommandPipeline.class);
+    @CustomValue("fee.init.async.enabled")
+    private boolean enabled;
+    @CustomValue("fee.init.async.workers")
+    private int workers;
+    @CustomValue("fee.init.async.queueCapacity")
+    private int queueCapacity;
+    private ThreadPoolExecutor executor;
+
+    public static void initFeeCommandPipeline() throws IllegalAccessException {
+        if (instance == null) {
+            synchronized (FeeCommandPipeline.class) {
+                if (instance == null) {
+                    FeeCommandPipeline instanceTemp = new FeeCommandPipeline();
+                    ValueInjector.injectValues(instanceTemp);
+                    instanceTemp.registerExecutor();
+                    instance = instanceTemp;
+                }
+            }
+        }
+    }
+
+    public static FeeCommandPipeline getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("FeeCommandPipeline not initialized. Call init() before getInstance()");
+        }
+        return instance;
+    }
+
+    private void registerExecutor() {
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "fee-init-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("Create fee command pipeline with {} workers and queue capacity {}", workers, queueCapacity);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return false when the queue is full and the command was not accepted
+     */
+    public boolean submit(FeeCommand feeCommand) {
+        CommandStatusService commandStatusService = CommandStatusService.getInstance();
+        commandStatusService.setStatus(feeCommand.getCommandCode(), CommandStatus.PENDING);
+        try {
+            String logId = MDC.get(CommonUtil.LOG_ID);
+            executor.execute(() -> this.persist(feeCommand, logId));
+            return true;
+        } catch (RejectedExecutionException e) {
+            logger.warn("Fee command pipeline is full, reject commandCode: {}", feeCommand.getCommandCode());
+            commandStatusService.setStatus(feeCommand.getCommandCode(), CommandStatus.FAILED);
+            return false;
+        }
+    }
+
+    private void persist(FeeCommand feeCommand, String logId) {
+        MDC.put(CommonUtil.LOG_ID, logId);
+        try {
+            boolean resultInitFee = TransactionService.getInstance().initFeeCommand(feeCommand);
+            CommandStatus status = resultInitFee ? CommandStatus.PERSISTED : CommandStatus.FAILED;
+            CommandStatusService.getInstance().setStatus(feeCommand.getCommandCode(), status);
+        } finally {
+            MDC.remove(CommonUtil.LOG_ID);
+        }
+    }
+
+    public void shutdown() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+                logger.warn("Fee command pipeline stopped with {} commands left in queue",
+                        executor.shutdownNow().size());
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,16 +1,101 @@
 package vn.vnpay.fee.job;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vn.vnpay.fee.annotation.CustomValue;
+import vn.vnpay.fee.annotation.ValueInjector;
+import vn.vnpay.fee.config.reload.ConfigWatcher;
 import vn.vnpay.fee.service.TransactionService;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Runs the fee scanners. Each worker drains batches back to back while rows keep coming,
+ * then backs off exponentially from the min to the max interval while the table stays empty.
+ */
 public class ScheduleScanTime {
 
-    public void cronJob(TransactionService transactionService) {
-        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-        Runnable task = transactionService::scanFee;
-        scheduler.scheduleAtFixedRate(task, 180, 180, TimeUnit.SECONDS);
+    private final Logger logger = LoggerFactory.getLogger(ScheduleScanTime.class);
+    @CustomValue("fee.scan.workers")
+    private int scanWorkers;
+    @CustomValue(value = "fee.scan.maxBatchesPerTick", reloadable = true, min = 1)
+    private volatile int maxBatchesPerTick;
+    @CustomValue(value = "fee.scan.minIntervalMillis", reloadable = true, min = 1)
+    private volatile int minIntervalMillis;
+    @CustomValue(value = "fee.scan.maxIntervalMillis", reloadable = true, min = 1)
+    private volatile int maxIntervalMillis;
+    private ScheduledThreadPoolExecutor scheduler;
+
+    public void cronJob(TransactionService transactionService) throws IllegalAccessException {
+        ValueInjector.injectValues(this);
+        ConfigWatcher.getInstance().register(this);
+        AtomicInteger threadIndex = new AtomicInteger();
+        scheduler = new ScheduledThreadPoolExecutor(scanWorkers, runnable -> {
+            Thread thread = new Thread(runnable, "fee-scan-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        for (int i = 0; i < scanWorkers; i++) {
+            scheduler.schedule(new ScanWorker(transactionService), minIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        logger.info("Start {} fee scan workers with interval from {} to {} millisecond", scanWorkers,
+                minIntervalMillis, maxIntervalMillis);
+    }
+
+    public void shutdown() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(30, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+            logger.info("Fee scan workers stopped");
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class ScanWorker implements Runnable {
+        private final TransactionService transactionService;
+        private long idleDelayMillis = minIntervalMillis;
+
+        ScanWorker(TransactionService transactionService) {
+            this.transactionService = transactionService;
+        }
+
+        @Override
+        public void run() {
+            int processed = 0;
+            try {
+                for (int batch = 0; batch < maxBatchesPerTick && !scheduler.isShutdown(); batch++) {
+                    processed = transactionService.scanFee();
+                    if (processed == 0) {
+                        break;
+                    }
+                }
+            } catch (Exception e) {
+                logger.error("Fee scan worker failed", e);
+            }
+            long delayMillis;
+            if (processed > 0) {
+                idleDelayMillis = minIntervalMillis;
+                delayMillis = 0;
+            } else {
+                delayMillis = idleDelayMillis;
+                idleDelayMillis = Math.min(idleDelayMillis * 2, maxIntervalMillis);
+            }
+            try {
+                scheduler.schedule(this, delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                logger.debug("Fee scan worker is not rescheduled because the scheduler is shut down");
+            }
+        }
     }
 }
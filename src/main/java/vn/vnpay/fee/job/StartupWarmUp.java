@@ -0,0 +1,75 @@
+package vn.vnpay.fee.job;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vn.vnpay.fee.annotation.CustomValue;
+import vn.vnpay.fee.annotation.ValueInjector;
+import vn.vnpay.fee.config.database.DataSourceConfig;
+import vn.vnpay.fee.config.redis.RedisConfig;
+import vn.vnpay.fee.controller.FeeController;
+import vn.vnpay.fee.service.CommandStatusService;
+import vn.vnpay.fee.service.TransactionService;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Exercises the database, redis and request handling paths before the node reports ready, so the
+ * pools are filled and the hot code is compiled when the first real request arrives. Only reads are
+ * issued, with ids no command can have.
+ */
+public class StartupWarmUp {
+
+    private static final long WARM_UP_COMMAND_CODE = -1L;
+    private final Logger logger = LoggerFactory.getLogger(StartupWarmUp.class);
+    @CustomValue("startup.warmup.iterations")
+    private int iterations;
+    @CustomValue("startup.warmup.poolTimeoutMillis")
+    private int poolTimeoutMillis;
+
+    public StartupWarmUp() throws IllegalAccessException {
+        ValueInjector.injectValues(this);
+    }
+
+    /**
+     * Runs the database, redis and handler warm-ups in parallel and fails when the database or redis
+     * cannot be reached.
+     */
+    public void run(FeeController feeController, Executor executor) throws Exception {
+        long start = System.currentTimeMillis();
+        CompletableFuture<Void> database = CompletableFuture.runAsync(this::warmUpDatabase, executor);
+        CompletableFuture<Void> redis = CompletableFuture.runAsync(this::warmUpRedis, executor);
+        try {
+            feeController.warmUp(iterations);
+            CompletableFuture.allOf(database, redis).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+        logger.info("Warm up {} iterations in {} millisecond", iterations, System.currentTimeMillis() - start);
+    }
+
+    private void warmUpDatabase() {
+        try {
+            if (!DataSourceConfig.getInstance().warmUpPool(poolTimeoutMillis)) {
+                logger.warn("Database pool did not reach its minimum idle connections in {} millisecond",
+                        poolTimeoutMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Database warm up is interrupted", e);
+        }
+        TransactionService transactionService = TransactionService.getInstance();
+        for (int i = 0; i < iterations; i++) {
+            transactionService.isFeeCommandPersisted(WARM_UP_COMMAND_CODE);
+        }
+    }
+
+    private void warmUpRedis() {
+        RedisConfig.getInstance().ping();
+        CommandStatusService commandStatusService = CommandStatusService.getInstance();
+        for (int i = 0; i < iterations; i++) {
+            commandStatusService.getStatus(WARM_UP_COMMAND_CODE);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package vn.vnpay.fee.service;
+
+import vn.vnpay.fee.common.CommandStatus;
+import vn.vnpay.fee.service.impl.CommandStatusServiceImpl;
+
+public interface CommandStatusService {
+
+    void setStatus(long commandCode, CommandStatus status);
+
+    /**
+     * @return the status of the command, or null when the command is unknown
+     */
+    CommandStatus getStatus(long commandCode);
+
+    static CommandStatusService getInstance() {
+        return CommandStatusServiceImpl.getInstance();
+    }
+}
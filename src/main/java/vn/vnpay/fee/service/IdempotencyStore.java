@@ -0,0 +1,28 @@
+package vn.vnpay.fee.service;
+
+import vn.vnpay.fee.service.impl.BloomFilterIdempotencyStore;
+import vn.vnpay.fee.service.impl.RedisIdempotencyStore;
+
+import java.util.List;
+
+public interface IdempotencyStore {
+
+    /**
+     * Checks and reserves the request id in one atomic step, the reservation lasts until the end of the day.
+     *
+     * @return true when the id is reserved for this request, false when it has already been used
+     */
+    boolean reserve(String requestId);
+
+    /**
+     * Reserves several request ids in one round trip.
+     *
+     * @return for each id, true when it is reserved for this request
+     */
+    boolean[] reserveAll(List<String> requestIds);
+
+    static IdempotencyStore getInstance() {
+        IdempotencyStore bloomFilterStore = BloomFilterIdempotencyStore.getInstance();
+        return bloomFilterStore != null ? bloomFilterStore : RedisIdempotencyStore.getInstance();
+    }
+}
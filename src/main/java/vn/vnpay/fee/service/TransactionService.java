@@ -3,13 +3,35 @@ package vn.vnpay.fee.service;
 import vn.vnpay.fee.bean.FeeCommand;
 import vn.vnpay.fee.service.impl.TransactionServiceImpl;
 
+import java.util.List;
+
 public interface TransactionService {
 
-    boolean initFeeCommand(FeeCommand feeCommand, String logId);
+    int UPDATE_FAILED = -1;
+
+    boolean initFeeCommand(FeeCommand feeCommand);
+
+    /**
+     * Persists several commands and their transactions in a single database transaction.
+     */
+    boolean initFeeCommands(List<FeeCommand> feeCommands);
+
+    /**
+     * Moves the CREATE transactions of a command to FEE_CHARGING.
+     *
+     * @return the number of updated transactions, or {@link #UPDATE_FAILED}
+     */
+    int updateFee(long commandCode);
 
-    boolean updateFee(String commandCode, String logId);
+    /**
+     * Claims and processes one batch of FEE_CHARGING transactions, safe to run from several
+     * threads and nodes at once.
+     *
+     * @return the number of processed transactions
+     */
+    int scanFee();
 
-    void scanFee();
+    boolean isFeeCommandPersisted(long commandCode);
 
     static TransactionService getInstance() {
         return TransactionServiceImpl.getInstance();
@@ -0,0 +1,230 @@
+package vn.vnpay.fee.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import vn.vnpay.fee.annotation.CustomValue;
+import vn.vnpay.fee.annotation.ValueInjector;
+import vn.vnpay.fee.common.BloomFilter;
+import vn.vnpay.fee.common.CachedClock;
+import vn.vnpay.fee.common.CommonUtil;
+import vn.vnpay.fee.service.IdempotencyStore;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a Bloom filter of the request ids seen today in front of the redis store. A definite miss is
+ * accepted without waiting for redis, its reservation is written behind in pipelined batches. Only
+ * possible hits go to redis for confirmation. The filter is replaced when the day changes, which is
+ * when the redis reservations expire.
+ * <p>
+ * A request id replayed on another node before the reservation is flushed is not detected, so the
+ * filter is meant for deployments that tolerate that window of a few milliseconds.
+ */
+public class BloomFilterIdempotencyStore implements IdempotencyStore {
+
+    private static final int LOCK_STRIPES = 64;
+    private static final int FLUSH_BATCH_SIZE = 1000;
+    private static volatile BloomFilterIdempotencyStore instance;
+    private final Logger logger = LoggerFactory.getLogger(BloomFilterIdempotencyStore.class);
+    @CustomValue("idempotency.bloom.enabled")
+    private boolean enabled;
+    @CustomValue("idempotency.bloom.expectedInsertions")
+    private long expectedInsertions;
+    @CustomValue("idempotency.bloom.falsePositiveRate")
+    private double falsePositiveRate;
+    @CustomValue("idempotency.bloom.flushIntervalMillis")
+    private int flushIntervalMillis;
+    @CustomValue("idempotency.bloom.queueCapacity")
+    private int queueCapacity;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Set<String> pendingRequestIds = ConcurrentHashMap.newKeySet();
+    private final AtomicLong definiteMisses = new AtomicLong();
+    private final AtomicLong possibleHits = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+    private BlockingQueue<String> writeBehindQueue;
+    private volatile DayFilter dayFilter;
+
+    private BloomFilterIdempotencyStore() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public static void initBloomFilterIdempotencyStore() throws IllegalAccessException {
+        if (instance == null) {
+            synchronized (BloomFilterIdempotencyStore.class) {
+                if (instance == null) {
+                    BloomFilterIdempotencyStore instanceTemp = new BloomFilterIdempotencyStore();
+                    ValueInjector.injectValues(instanceTemp);
+                    if (instanceTemp.enabled) {
+                        instanceTemp.registerWriteBehind();
+                        instance = instanceTemp;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the store, or null when the Bloom filter is disabled
+     */
+    public static BloomFilterIdempotencyStore getInstance() {
+        return instance;
+    }
+
+    private void registerWriteBehind() {
+        writeBehindQueue = new ArrayBlockingQueue<>(queueCapacity);
+        dayFilter = new DayFilter(CachedClock.getInstance().endOfDayMillis(),
+                new BloomFilter(expectedInsertions, falsePositiveRate));
+        ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idempotency-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        logger.info("Create request id Bloom filter with {} bytes and {} hash functions",
+                dayFilter.filter.memoryBytes(), dayFilter.filter.hashCount());
+    }
+
+    public boolean reserve(String requestId) {
+        BloomFilter filter = this.currentFilter();
+        synchronized (locks[(requestId.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES]) {
+            if (filter.put(requestId)) {
+                definiteMisses.incrementAndGet();
+                pendingRequestIds.add(requestId);
+                if (writeBehindQueue.offer(requestId)) {
+                    return true;
+                }
+                pendingRequestIds.remove(requestId);
+                return RedisIdempotencyStore.getInstance().reserve(requestId);
+            }
+            if (pendingRequestIds.contains(requestId)) {
+                return false;
+            }
+        }
+        possibleHits.incrementAndGet();
+        boolean isReserved = RedisIdempotencyStore.getInstance().reserve(requestId);
+        if (isReserved) {
+            falsePositives.incrementAndGet();
+        }
+        return isReserved;
+    }
+
+    public boolean[] reserveAll(List<String> requestIds) {
+        boolean[] reserved = new boolean[requestIds.size()];
+        List<String> possibleHitIds = new ArrayList<>();
+        List<Integer> possibleHitIndexes = new ArrayList<>();
+        BloomFilter filter = this.currentFilter();
+        for (int i = 0; i < reserved.length; i++) {
+            String requestId = requestIds.get(i);
+            synchronized (locks[(requestId.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES]) {
+                if (filter.put(requestId)) {
+                    definiteMisses.incrementAndGet();
+                    pendingRequestIds.add(requestId);
+                    if (writeBehindQueue.offer(requestId)) {
+                        reserved[i] = true;
+                        continue;
+                    }
+                    pendingRequestIds.remove(requestId);
+                } else if (pendingRequestIds.contains(requestId)) {
+                    continue;
+                } else {
+                    possibleHits.incrementAndGet();
+                }
+            }
+            possibleHitIds.add(requestId);
+            possibleHitIndexes.add(i);
+        }
+        if (!possibleHitIds.isEmpty()) {
+            boolean[] confirmed = RedisIdempotencyStore.getInstance().reserveAll(possibleHitIds);
+            for (int i = 0; i < confirmed.length; i++) {
+                reserved[possibleHitIndexes.get(i)] = confirmed[i];
+            }
+        }
+        return reserved;
+    }
+
+    private BloomFilter currentFilter() {
+        CachedClock clock = CachedClock.getInstance();
+        DayFilter current = dayFilter;
+        if (this.isExpired(current, clock)) {
+            synchronized (this) {
+                if (this.isExpired(dayFilter, clock)) {
+                    logger.info("Rotate request id Bloom filter, metrics of previous day: {}", this.getMetrics());
+                    dayFilter = new DayFilter(clock.endOfDayMillis(),
+                            new BloomFilter(expectedInsertions, falsePositiveRate));
+                    definiteMisses.set(0);
+                    possibleHits.set(0);
+                    falsePositives.set(0);
+                }
+                current = dayFilter;
+            }
+        }
+        return current.filter;
+    }
+
+    /**
+     * The filter is past its day once the clock has moved on to the end of a later day, during the last
+     * second of the day the clock still reports the current one.
+     */
+    private boolean isExpired(DayFilter filter, CachedClock clock) {
+        return clock.currentTimeMillis() > filter.endOfDayMillis && clock.endOfDayMillis() > filter.endOfDayMillis;
+    }
+
+    private void flush() {
+        List<String> requestIds = new ArrayList<>(FLUSH_BATCH_SIZE);
+        try {
+            while (writeBehindQueue.drainTo(requestIds, FLUSH_BATCH_SIZE) > 0) {
+                MDC.put(CommonUtil.LOG_ID, CommonUtil.generateLogId());
+                boolean[] reserved = RedisIdempotencyStore.getInstance().reserveAll(requestIds);
+                for (int i = 0; i < reserved.length; i++) {
+                    if (!reserved[i]) {
+                        logger.warn("RequestId: {} was already reserved by another node", requestIds.get(i));
+                    }
+                }
+                pendingRequestIds.removeAll(requestIds);
+                requestIds.clear();
+            }
+        } catch (Exception e) {
+            logger.error("Error flushing request id reservations to redis", e);
+            pendingRequestIds.removeAll(requestIds);
+        } finally {
+            MDC.remove(CommonUtil.LOG_ID);
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        BloomFilter filter = dayFilter.filter;
+        long hits = possibleHits.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("bloom.memoryBytes", filter.memoryBytes());
+        metrics.put("bloom.expectedFalsePositiveRate", filter.expectedFalsePositiveRate());
+        metrics.put("bloom.observedFalsePositiveRate", hits == 0 ? 0.0 : (double) falsePositives.get() / hits);
+        metrics.put("bloom.definiteMisses", definiteMisses.get());
+        metrics.put("bloom.possibleHits", hits);
+        metrics.put("bloom.pendingWrites", writeBehindQueue.size());
+        return metrics;
+    }
+
+    private static final class DayFilter {
+        private final long endOfDayMillis;
+        private final BloomFilter filter;
+
+        private DayFilter(long endOfDayMillis, BloomFilter filter) {
+            this.endOfDayMillis = endOfDayMillis;
+            this.filter = filter;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package vn.vnpay.fee.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import vn.vnpay.fee.annotation.CustomValue;
+import vn.vnpay.fee.annotation.ValueInjector;
+import vn.vnpay.fee.common.CommandStatus;
+import vn.vnpay.fee.config.redis.RedisConfig;
+import vn.vnpay.fee.config.reload.ConfigWatcher;
+import vn.vnpay.fee.service.CommandStatusService;
+import vn.vnpay.fee.service.TransactionService;
+
+/**
+ * Keeps the status of asynchronously accepted commands in Redis so any node can answer a status request.
+ * Once the status has expired, a command found in FEE_COMMAND is reported as persisted.
+ */
+public class CommandStatusServiceImpl implements CommandStatusService {
+
+    private static final String KEY_PREFIX = "fee:command:status:";
+    private static volatile CommandStatusService instance;
+    private final Logger logger = LoggerFactory.getLogger(CommandStatusServiceImpl.class);
+    @CustomValue(value = "fee.command.status.ttlSeconds", reloadable = true)
+    private volatile int statusTtlSeconds;
+
+    private CommandStatusServiceImpl() {
+        try {
+            ValueInjector.injectValues(this);
+            ConfigWatcher.getInstance().register(this);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot inject configuration into CommandStatusServiceImpl", e);
+        }
+    }
+
+    public static CommandStatusService getInstance() {
+        if (instance == null) {
+            synchronized (CommandStatusServiceImpl.class) {
+                if (instance == null) {
+                    instance = new CommandStatusServiceImpl();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public void setStatus(long commandCode, CommandStatus status) {
+        RedisConfig redisConfig = RedisConfig.getInstance();
+        Jedis jedis = null;
+        try {
+            jedis = redisConfig.getResource();
+            jedis.setex(KEY_PREFIX + commandCode, (long) statusTtlSeconds, status.name());
+            logger.debug("Set status of commandCode: {} to {}", commandCode, status);
+        } catch (Exception e) {
+            logger.error("Error set status of commandCode: {} to redis", commandCode, e);
+        } finally {
+            if (jedis != null) {
+                redisConfig.returnConnection(jedis);
+            }
+        }
+    }
+
+    public CommandStatus getStatus(long commandCode) {
+        RedisConfig redisConfig = RedisConfig.getInstance();
+        Jedis jedis = null;
+        try {
+            jedis = redisConfig.getResource();
+            String status = jedis.get(KEY_PREFIX + commandCode);
+            if (status != null) {
+                return CommandStatus.valueOf(status);
+            }
+        } catch (Exception e) {
+            logger.error("Error get status of commandCode: {} from redis", commandCode, e);
+        } finally {
+            if (jedis != null) {
+                redisConfig.returnConnection(jedis);
+            }
+        }
+        return TransactionService.getInstance().isFeeCommandPersisted(commandCode) ? CommandStatus.PERSISTED : null;
+    }
+}
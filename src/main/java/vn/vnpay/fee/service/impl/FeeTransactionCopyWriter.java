@@ -0,0 +1,100 @@
+package vn.vnpay.fee.service.impl;
+
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+import vn.vnpay.fee.bean.FeeCommand;
+import vn.vnpay.fee.bean.FeeTransaction;
+import vn.vnpay.fee.common.CommonUtil;
+import vn.vnpay.fee.common.FeeStatus;
+import vn.vnpay.fee.common.IdRange;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Streams the FEE_TRANSACTION rows of a command into Postgres with COPY, bypassing the ORM.
+ * Runs on the connection of the caller's transaction so the copied rows commit together with the command.
+ */
+class FeeTransactionCopyWriter {
+
+    private static final String COPY_SQL = "COPY FEE_TRANSACTION (ID, TRANSACTION_CODE, COMMAND_CODE, FEE_AMOUNT, "
+            + "STATUS, TOTAL_SCAN, CREATED_DATE) FROM STDIN WITH (FORMAT csv)";
+
+    /**
+     * Every value returned by the pooled sequence reserves the ids (value - allocationSize, value],
+     * the same block Hibernate would take for it.
+     */
+    private static final String RESERVE_ID_SQL = "SELECT nextval('FEE_TRANSACTION_SEQ') FROM generate_series(1, ?)";
+
+    private static final int FLUSH_SIZE = 64 * 1024;
+
+    private FeeTransactionCopyWriter() {
+    }
+
+    static long copy(Connection connection, FeeCommand feeCommand) throws SQLException {
+        int totalRecord = feeCommand.getTotalRecord();
+        long[] idBlocks = reserveIdBlocks(connection, totalRecord);
+        IdRange transactionCodes = CommonUtil.getNextIds(totalRecord);
+        CopyManager copyManager = new CopyManager(connection.unwrap(BaseConnection.class));
+        CopyIn copyIn = copyManager.copyIn(COPY_SQL);
+        try {
+            StringBuilder rows = new StringBuilder(FLUSH_SIZE + 256);
+            String createdDate = feeCommand.getCreatedDate().toString();
+            int written = 0;
+            for (int i = 0; i < idBlocks.length && written < totalRecord; i++) {
+                long id = idBlocks[i] - FeeTransaction.ID_ALLOCATION_SIZE + 1;
+                for (; id <= idBlocks[i] && written < totalRecord; id++, written++) {
+                    rows.append(id).append(',')
+                            .append(transactionCodes.get(written)).append(',')
+                            .append(feeCommand.getCommandCode()).append(',')
+                            .append(0.0).append(',')
+                            .append(FeeStatus.CREATE.name()).append(',')
+                            .append(0).append(',')
+                            .append(createdDate).append('\n');
+                    if (rows.length() >= FLUSH_SIZE) {
+                        writeRows(copyIn, rows);
+                    }
+                }
+            }
+            writeRows(copyIn, rows);
+            return copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private static long[] reserveIdBlocks(Connection connection, int totalRecord) throws SQLException {
+        // one spare block covers the first value of a fresh sequence, which does not own a full block
+        int blockCount = (totalRecord + FeeTransaction.ID_ALLOCATION_SIZE - 1) / FeeTransaction.ID_ALLOCATION_SIZE + 1;
+        long[] idBlocks = new long[blockCount];
+        int size = 0;
+        try (PreparedStatement statement = connection.prepareStatement(RESERVE_ID_SQL)) {
+            statement.setInt(1, blockCount);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    long blockEnd = resultSet.getLong(1);
+                    if (blockEnd >= FeeTransaction.ID_ALLOCATION_SIZE) {
+                        idBlocks[size++] = blockEnd;
+                    }
+                }
+            }
+        }
+        long[] result = new long[size];
+        System.arraycopy(idBlocks, 0, result, 0, size);
+        return result;
+    }
+
+    private static void writeRows(CopyIn copyIn, StringBuilder rows) throws SQLException {
+        if (rows.length() > 0) {
+            byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            rows.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package vn.vnpay.fee.service.impl;
+
+import vn.vnpay.fee.bean.FeeCommand;
+import vn.vnpay.fee.bean.FeeTransaction;
+import vn.vnpay.fee.common.CommonUtil;
+import vn.vnpay.fee.common.FeeStatus;
+import vn.vnpay.fee.common.IdRange;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Produces the fee transactions of a command one at a time, so only the rows of the
+ * batch being persisted are ever held in memory.
+ */
+class FeeTransactionGenerator implements Iterator<FeeTransaction> {
+
+    private final long commandCode;
+    private final int totalRecord;
+    private final LocalDateTime createdDate;
+    private final IdRange transactionCodes;
+    private int generated;
+
+    FeeTransactionGenerator(FeeCommand feeCommand) {
+        this.commandCode = feeCommand.getCommandCode();
+        this.totalRecord = feeCommand.getTotalRecord();
+        // every row of the command shares its timestamp
+        this.createdDate = feeCommand.getCreatedDate();
+        this.transactionCodes = totalRecord > 0 ? CommonUtil.getNextIds(totalRecord) : null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return generated < totalRecord;
+    }
+
+    @Override
+    public FeeTransaction next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        FeeTransaction feeTransaction = new FeeTransaction();
+        feeTransaction.setCommandCode(commandCode);
+        feeTransaction.setTransactionCode(transactionCodes.get(generated++));
+        feeTransaction.setStatus(FeeStatus.CREATE);
+        feeTransaction.setCreatedDate(createdDate);
+        return feeTransaction;
+    }
+
+    int getGenerated() {
+        return generated;
+    }
+}
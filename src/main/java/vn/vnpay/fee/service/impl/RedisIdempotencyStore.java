@@ -0,0 +1,90 @@
+package vn.vnpay.fee.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.params.SetParams;
+import vn.vnpay.fee.common.CommonUtil;
+import vn.vnpay.fee.config.redis.RedisConfig;
+import vn.vnpay.fee.service.IdempotencyStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reserves request ids with a single SET NX EX, so concurrent requests carrying the same id
+ * cannot both pass. When redis is unreachable the request is let through, as before.
+ */
+public class RedisIdempotencyStore implements IdempotencyStore {
+
+    private static volatile RedisIdempotencyStore instance;
+    private final Logger logger = LoggerFactory.getLogger(RedisIdempotencyStore.class);
+
+    public static RedisIdempotencyStore getInstance() {
+        if (instance == null) {
+            synchronized (RedisIdempotencyStore.class) {
+                if (instance == null) {
+                    instance = new RedisIdempotencyStore();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public boolean reserve(String requestId) {
+        RedisConfig redisConfig = RedisConfig.getInstance();
+        Jedis jedis = null;
+        try {
+            jedis = redisConfig.getResource();
+            long timeToLife = Math.max(1, CommonUtil.processTimeToLife());
+            String result = jedis.set(requestId, "", SetParams.setParams().nx().ex(timeToLife));
+            boolean isReserved = "OK".equalsIgnoreCase(result);
+            if (isReserved) {
+                logger.debug("Reserve requestId : {} on Redis successfully !", requestId);
+            }
+            return isReserved;
+        } catch (JedisConnectionException e) {
+            logger.error("Error connecting to Redis", e);
+            return true;
+        } catch (Exception e) {
+            logger.error("An occur error when reserve requestId on redis", e);
+            return true;
+        } finally {
+            if (jedis != null) {
+                redisConfig.returnConnection(jedis);
+            }
+        }
+    }
+
+    public boolean[] reserveAll(List<String> requestIds) {
+        boolean[] reserved = new boolean[requestIds.size()];
+        RedisConfig redisConfig = RedisConfig.getInstance();
+        Jedis jedis = null;
+        try {
+            jedis = redisConfig.getResource();
+            SetParams setParams = SetParams.setParams().nx().ex(Math.max(1, CommonUtil.processTimeToLife()));
+            Pipeline pipeline = jedis.pipelined();
+            List<Response<String>> responses = new ArrayList<>(requestIds.size());
+            for (String requestId : requestIds) {
+                responses.add(pipeline.set(requestId, "", setParams));
+            }
+            pipeline.sync();
+            for (int i = 0; i < reserved.length; i++) {
+                reserved[i] = "OK".equalsIgnoreCase(responses.get(i).get());
+            }
+            logger.info("Reserve {} requestId on Redis in one pipeline", requestIds.size());
+        } catch (Exception e) {
+            logger.error("An occur error when reserve list requestId on redis", e);
+            Arrays.fill(reserved, true);
+        } finally {
+            if (jedis != null) {
+                redisConfig.returnConnection(jedis);
+            }
+        }
+        return reserved;
+    }
+}
@@ -0,0 +1,35 @@
+package vn.vnpay.fee.service.impl;
+
+import vn.vnpay.fee.annotation.CustomValue;
+
+import java.time.LocalDateTime;
+
+/**
+ * Exponential backoff between two scans of the same fee transaction.
+ */
+class ScanRetryPolicy {
+
+    @CustomValue(value = "fee.scan.maxAttempts", reloadable = true, min = 1)
+    private volatile int maxAttempts;
+    @CustomValue(value = "fee.scan.retry.baseDelaySeconds", reloadable = true, min = 1)
+    private volatile int baseDelaySeconds;
+    @CustomValue(value = "fee.scan.retry.multiplier", reloadable = true, min = 1)
+    private volatile int multiplier;
+    @CustomValue(value = "fee.scan.retry.maxDelaySeconds", reloadable = true, min = 1)
+    private volatile int maxDelaySeconds;
+
+    boolean isExhausted(int totalScan) {
+        return totalScan >= maxAttempts;
+    }
+
+    /**
+     * @param totalScan : number of scans already done on the transaction
+     */
+    LocalDateTime nextScanAt(LocalDateTime now, int totalScan) {
+        long delaySeconds = baseDelaySeconds;
+        for (int i = 1; i < totalScan && delaySeconds < maxDelaySeconds; i++) {
+            delaySeconds *= multiplier;
+        }
+        return now.plusSeconds(Math.min(delaySeconds, maxDelaySeconds));
+    }
+}
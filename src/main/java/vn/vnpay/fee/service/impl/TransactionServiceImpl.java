@@ -1,28 +1,46 @@
 package vn.vnpay.fee.service.impl;
 
 import org.hibernate.Session;
-import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
-import org.hibernate.query.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import vn.vnpay.fee.annotation.CustomValue;
+import vn.vnpay.fee.annotation.ValueInjector;
 import vn.vnpay.fee.bean.FeeCommand;
 import vn.vnpay.fee.bean.FeeTransaction;
+import vn.vnpay.fee.common.CachedClock;
 import vn.vnpay.fee.common.CommonUtil;
 import vn.vnpay.fee.common.FeeStatus;
 import vn.vnpay.fee.common.Performer;
 import vn.vnpay.fee.config.database.DataSourceConfig;
+import vn.vnpay.fee.config.reload.ConfigWatcher;
 import vn.vnpay.fee.service.TransactionService;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 public class TransactionServiceImpl implements TransactionService {
 
-    private final ThreadLocal<String> logIdThreadLocal = new ThreadLocal<>();
     private final Logger logger = LoggerFactory.getLogger(TransactionServiceImpl.class);
     private static volatile TransactionService instance;
+    @CustomValue(value = "fee.update.chunkSize", reloadable = true, min = 1)
+    private volatile int updateChunkSize;
+    @CustomValue(value = "fee.scan.batchSize", reloadable = true, min = 1)
+    private volatile int scanBatchSize;
+    private final ScanRetryPolicy scanRetryPolicy = new ScanRetryPolicy();
+
+    private TransactionServiceImpl() {
+        try {
+            ValueInjector.injectValues(this);
+            ValueInjector.injectValues(scanRetryPolicy);
+            ConfigWatcher.getInstance().register(this);
+            ConfigWatcher.getInstance().register(scanRetryPolicy);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot inject configuration into TransactionServiceImpl", e);
+        }
+    }
 
     public static TransactionService getInstance() {
         if (instance == null) {
@@ -35,172 +53,209 @@ public class TransactionServiceImpl implements TransactionService {
         return instance;
     }
 
-    public boolean initFeeCommand(FeeCommand feeCommand, String logId) {
-        logIdThreadLocal.set(logId);
+    public boolean initFeeCommand(FeeCommand feeCommand) {
         DataSourceConfig connectionPool = DataSourceConfig.getInstance();
-        SessionFactory sessionFactory = connectionPool.getSessionFactory();
         Transaction transaction = null;
-        try (Session session = sessionFactory.openSession()) {
-            this.setFeeCommand(feeCommand);
-            List<FeeTransaction> feeTransactionList = this.createFeeTransactions(feeCommand);
+        long start = System.currentTimeMillis();
+        try (Session session = connectionPool.openSession()) {
             transaction = session.beginTransaction();
-            logger.info("[{}] - Begin transaction to save fee command and fee transaction ", logId);
-            session.save(feeCommand);
-            logger.info("[{}] - Save fee command successfully with id: {}", logId, feeCommand.getId());
-            feeTransactionList.forEach(session::save);
-            logger.info("[{}] - Save list fee transaction successfully with size : {}", logId, feeTransactionList.size());
+            this.saveFeeCommand(session, feeCommand, connectionPool);
             transaction.commit();
-            logger.info("[{}] - Commit transaction to save fee command and fee transaction successfully", logId);
+            logger.info("Save fee command with commandCode: {} and {} fee transaction in {} millisecond",
+                    feeCommand.getCommandCode(), feeCommand.getTotalRecord(), System.currentTimeMillis() - start);
             return true;
         } catch (Exception ex) {
-            logger.error("[{}] - Occur error while initializing transaction", logId, ex);
+            logger.error("Occur error while initializing transaction", ex);
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            return false;
+        }
+    }
+
+    public boolean initFeeCommands(List<FeeCommand> feeCommands) {
+        DataSourceConfig connectionPool = DataSourceConfig.getInstance();
+        Transaction transaction = null;
+        long start = System.currentTimeMillis();
+        try (Session session = connectionPool.openSession()) {
+            transaction = session.beginTransaction();
+            for (FeeCommand feeCommand : feeCommands) {
+                this.saveFeeCommand(session, feeCommand, connectionPool);
+            }
+            transaction.commit();
+            logger.info("Save {} fee command in {} millisecond", feeCommands.size(),
+                    System.currentTimeMillis() - start);
+            return true;
+        } catch (Exception ex) {
+            logger.error("Occur error while initializing list fee command", ex);
             if (transaction != null && transaction.isActive()) {
                 transaction.rollback();
             }
             return false;
-        } finally {
-            logIdThreadLocal.remove();
+        }
+    }
+
+    private void saveFeeCommand(Session session, FeeCommand feeCommand, DataSourceConfig connectionPool) {
+        this.setFeeCommand(feeCommand);
+        session.save(feeCommand);
+        logger.debug("Save fee command successfully with id: {}", feeCommand.getId());
+        if (feeCommand.getTotalRecord() > connectionPool.getCopyThreshold()) {
+            long copiedRows = session.doReturningWork(connection -> FeeTransactionCopyWriter.copy(connection, feeCommand));
+            logger.debug("Copy fee transaction successfully with size : {}", copiedRows);
+        } else {
+            FeeTransactionGenerator feeTransactions = this.createFeeTransactions(feeCommand);
+            this.saveFeeTransactions(session, feeTransactions, connectionPool.getJdbcBatchSize());
+            logger.debug("Save list fee transaction successfully with size : {}",
+                    feeTransactions.getGenerated());
+        }
+    }
+
+    private void saveFeeTransactions(Session session, Iterator<FeeTransaction> feeTransactions, int batchSize) {
+        // the batch size may have been reloaded since the session factory was built
+        int flushSize = Math.max(1, batchSize);
+        session.setJdbcBatchSize(flushSize);
+        int count = 0;
+        while (feeTransactions.hasNext()) {
+            session.save(feeTransactions.next());
+            if (++count % flushSize == 0) {
+                session.flush();
+                session.clear();
+            }
         }
     }
 
     private void setFeeCommand(FeeCommand feeCommand) {
-        feeCommand.setCommandCode(CommonUtil.getNextId());
+        if (feeCommand.getCommandCode() == null) {
+            feeCommand.setCommandCode(CommonUtil.getNextId());
+        }
         feeCommand.setCreatedUser(Performer.ADMIN);
-        feeCommand.setCreatedDate(LocalDateTime.now());
+        feeCommand.setCreatedDate(CachedClock.getInstance().now());
     }
 
-    private List<FeeTransaction> createFeeTransactions(FeeCommand feeCommand) {
-        String logId = logIdThreadLocal.get();
-        int totalRecord = feeCommand.getTotalRecord();
-        logger.info("[{}] - Begin create list fee transaction with total record : {}", logId, totalRecord);
-        List<FeeTransaction> feeTransactionList = new ArrayList<>(totalRecord);
-        for (int i = 0; i < totalRecord; i++) {
-            FeeTransaction feeTransaction = new FeeTransaction();
-            feeTransaction.setCommandCode(feeCommand.getCommandCode());
-            feeTransaction.setTransactionCode(CommonUtil.getNextId());
-            feeTransaction.setStatus(FeeStatus.CREATE);
-            feeTransaction.setCreatedDate(LocalDateTime.now());
-            feeTransactionList.add(feeTransaction);
-        }
-        logger.info("[{}] - Create list fee transaction successfully with size : {}", logId, feeTransactionList.size());
-        return feeTransactionList;
+    private FeeTransactionGenerator createFeeTransactions(FeeCommand feeCommand) {
+        logger.debug("Begin create fee transactions with total record : {}", feeCommand.getTotalRecord());
+        return new FeeTransactionGenerator(feeCommand);
     }
 
-    public boolean updateFee(String commandCode, String logId) {
-        logIdThreadLocal.set(logId);
-        logger.info("[{}] - Start update status for fee transaction with commandCode: {}", logId, commandCode);
-        List<FeeTransaction> feeTransactions;
+    public int updateFee(long commandCode) {
+        long start = System.currentTimeMillis();
         DataSourceConfig connectionPool = DataSourceConfig.getInstance();
-        SessionFactory sessionFactory = connectionPool.getSessionFactory();
-        logger.info("[{}] -Getting sessionFactory from pool successfully", logId);
+        // read once, a reload during the run must not end the loop on a full chunk
+        int chunkSize = updateChunkSize;
         Transaction transaction = null;
-        boolean hasRecords = false;
-        try (Session session = sessionFactory.openSession()) {
+        int totalUpdated = 0;
+        int updated;
+        try (Session session = connectionPool.openSession()) {
             do {
-                feeTransactions = this.getListFeeTransactionForUpdate(session, commandCode);
-                hasRecords = !feeTransactions.isEmpty();
-                if (hasRecords) {
-                    transaction = session.beginTransaction();
-                    logger.info("[{}] - Begin transaction to update fee transaction ", logId);
-                    this.updateFeeTransaction(session, feeTransactions);
-                    transaction.commit();
-                    logger.info("[{}] - Commit transaction to update fee transaction successfully", logId);
-                }
-            } while (hasRecords);
-            logger.info("[{}] - Update fee transaction with commandCode: {} successfully", logId, commandCode);
-            return true;
+                transaction = session.beginTransaction();
+                updated = this.updateFeeTransactionChunk(session, commandCode, chunkSize);
+                transaction.commit();
+                totalUpdated += updated;
+                logger.debug("Commit transaction to update {} fee transaction successfully", updated);
+            } while (updated == chunkSize);
+            logger.info("Update {} fee transaction with commandCode: {} in {} millisecond", totalUpdated,
+                    commandCode, System.currentTimeMillis() - start);
+            return totalUpdated;
         } catch (Exception ex) {
-            logger.error("[{}] - Occur error while update fee transaction ", logId, ex);
+            logger.error("Occur error while update fee transaction", ex);
             if (transaction != null && transaction.isActive()) {
                 transaction.rollback();
             }
-            return false;
-        } finally {
-            logIdThreadLocal.remove();
+            return UPDATE_FAILED;
         }
     }
 
-
-    private List<FeeTransaction> getListFeeTransactionForUpdate(Session session, String commandCode) {
-        String logId = logIdThreadLocal.get();
-        logger.info("[{}] - Start getting list fee transaction for update with commandCode: {} ", logId,
-                commandCode);
-        String hql = "FROM FeeTransaction ft WHERE ft.status = :status and ft.totalScan = 0 and ft.commandCode = :commandCode ";
-        Query query = session.createQuery(hql);
-        query.setParameter("status", FeeStatus.CREATE);
-        query.setParameter("commandCode", commandCode);
-        query.setFirstResult(0);
-        query.setMaxResults(500);
-        List<FeeTransaction> feeTransactionList = query.list();
-        logger.info("[{}] - Getting list fee transaction for update with commandCode: {} successfully with size: {}", logId,
-                commandCode, feeTransactionList.size());
-        return feeTransactionList;
+    private int updateFeeTransactionChunk(Session session, long commandCode, int chunkSize) {
+        String sql = "UPDATE FEE_TRANSACTION SET STATUS = :newStatus, TOTAL_SCAN = 1, MODIFIED_DATE = :modifiedDate, "
+                + "NEXT_SCAN_AT = :modifiedDate "
+                + "WHERE ID IN (SELECT ID FROM FEE_TRANSACTION WHERE COMMAND_CODE = :commandCode "
+                + "AND STATUS = :status AND TOTAL_SCAN = 0 LIMIT :chunkSize)";
+        return session.createNativeQuery(sql)
+                .setParameter("newStatus", FeeStatus.FEE_CHARGING.name())
+                .setParameter("modifiedDate", CachedClock.getInstance().now())
+                .setParameter("commandCode", commandCode)
+                .setParameter("status", FeeStatus.CREATE.name())
+                .setParameter("chunkSize", chunkSize)
+                .executeUpdate();
     }
 
-    private void updateFeeTransaction(Session session, List<FeeTransaction> feeTransactionList) {
-        String logId = logIdThreadLocal.get();
-        logger.info("[{}] - Start update list fee transaction ", logId);
-        feeTransactionList.forEach(feeTransaction -> {
-            feeTransaction.setTotalScan(1);
-            feeTransaction.setModifiedDate(LocalDateTime.now());
-            feeTransaction.setStatus(FeeStatus.FEE_CHARGING);
-            session.save(feeTransaction);
-        });
-        logger.info("[{}] - End of update list fee transaction", logId);
-    }
 
+    public boolean isFeeCommandPersisted(long commandCode) {
+        DataSourceConfig connectionPool = DataSourceConfig.getInstance();
+        try (Session session = connectionPool.openSession()) {
+            Long count = session.createQuery("SELECT COUNT(fc.id) FROM FeeCommand fc WHERE fc.commandCode = :commandCode",
+                            Long.class)
+                    .setParameter("commandCode", commandCode)
+                    .uniqueResult();
+            return count != null && count > 0;
+        } catch (Exception ex) {
+            logger.error("Occur error while checking fee command with commandCode: {}", commandCode, ex);
+            return false;
+        }
+    }
 
-    public void scanFee() {
-        String logId = CommonUtil.generateLogId();
-        logIdThreadLocal.set(logId);
-        logger.info("[{}] - Start scan fee transaction ", logId);
+    public int scanFee() {
+        MDC.put(CommonUtil.LOG_ID, CommonUtil.generateLogId());
+        long start = System.currentTimeMillis();
         DataSourceConfig connectionPool = DataSourceConfig.getInstance();
-        SessionFactory sessionFactory = connectionPool.getSessionFactory();
         Transaction transaction = null;
-        try (Session session = sessionFactory.openSession()) {
-            List<FeeTransaction> listFeeTransactionForScan = getListFeeTransactionForScan(session);
+        try (Session session = connectionPool.openSession()) {
+            transaction = session.beginTransaction();
+            LocalDateTime now = CachedClock.getInstance().now();
+            List<FeeTransaction> listFeeTransactionForScan = getListFeeTransactionForScan(session, now);
             if (!listFeeTransactionForScan.isEmpty()) {
-                transaction = session.beginTransaction();
-                logger.info("[{}] - Begin transaction to update fee transaction when scan", logId);
-                this.processScanFee(session, listFeeTransactionForScan);
-                transaction.commit();
-                logger.info("[{}] - Commit transaction to update fee transaction when scan successfully", logId);
+                this.processScanFee(session, listFeeTransactionForScan, now);
+            }
+            transaction.commit();
+            if (!listFeeTransactionForScan.isEmpty()) {
+                logger.info("Scan {} fee transaction in {} millisecond", listFeeTransactionForScan.size(),
+                        System.currentTimeMillis() - start);
             }
-            logger.info("[{}] - Scan fee transaction successfully ", logId);
+            return listFeeTransactionForScan.size();
         } catch (Exception ex) {
-            logger.error("[{}] - Occur error while scan fee transaction ", logId, ex);
+            logger.error("Occur error while scan fee transaction", ex);
             if (transaction != null && transaction.isActive()) {
                 transaction.rollback();
             }
+            return 0;
+        } finally {
+            MDC.remove(CommonUtil.LOG_ID);
         }
     }
 
-    private List<FeeTransaction> getListFeeTransactionForScan(Session session) {
-        String logId = logIdThreadLocal.get();
-        logger.info("[{}] - Start getting list fee transaction for scan fee ", logId);
-        String hql = "FROM FeeTransaction ft WHERE ft.status = :status and ft.totalScan < 5";
-        Query query = session.createQuery(hql);
-        query.setParameter("status", FeeStatus.FEE_CHARGING);
-        query.setFirstResult(0);
-        query.setMaxResults(500);
-        List<FeeTransaction> feeTransactionList = query.list();
-        logger.info("[{}] - Getting list fee transaction for scan fee successfully with size: {}", logId,
+    /**
+     * Claims a batch of due rows for this transaction. Rows already locked by another scanner,
+     * on this node or another one, are skipped so every worker gets a disjoint batch.
+     */
+    private List<FeeTransaction> getListFeeTransactionForScan(Session session, LocalDateTime now) {
+        logger.debug("Start getting list fee transaction for scan fee");
+        String sql = "SELECT * FROM FEE_TRANSACTION WHERE STATUS = :status AND NEXT_SCAN_AT <= :now "
+                + "ORDER BY NEXT_SCAN_AT LIMIT :batchSize FOR UPDATE SKIP LOCKED";
+        List<FeeTransaction> feeTransactionList = session.createNativeQuery(sql, FeeTransaction.class)
+                .setParameter("status", FeeStatus.FEE_CHARGING.name())
+                .setParameter("now", now)
+                .setParameter("batchSize", scanBatchSize)
+                .list();
+        logger.debug("Getting list fee transaction for scan fee successfully with size: {}",
                 feeTransactionList.size());
         return feeTransactionList;
     }
 
-    private void processScanFee(Session session, List<FeeTransaction> feeTransactionList) {
-        String logId = logIdThreadLocal.get();
-        logger.info("[{}] - Start update list fee transaction when scan fee", logId);
+    private void processScanFee(Session session, List<FeeTransaction> feeTransactionList, LocalDateTime now) {
+        logger.debug("Start update list fee transaction when scan fee");
         feeTransactionList.forEach(feeTransaction -> {
-            if (feeTransaction.getTotalScan() == 4) {
+            int totalScan = feeTransaction.getTotalScan() + 1;
+            if (scanRetryPolicy.isExhausted(totalScan)) {
                 feeTransaction.setStatus(FeeStatus.FEE_STOP);
+                feeTransaction.setNextScanAt(null);
+            } else {
+                feeTransaction.setNextScanAt(scanRetryPolicy.nextScanAt(now, totalScan));
             }
-            feeTransaction.setTotalScan(feeTransaction.getTotalScan() + 1);
-            feeTransaction.setModifiedDate(LocalDateTime.now());
+            feeTransaction.setTotalScan(totalScan);
+            feeTransaction.setModifiedDate(now);
             session.save(feeTransaction);
         });
-        logger.info("[{}] - End of update list fee transaction when scan fee", logId);
+        logger.debug("End of update list fee transaction when scan fee");
     }
 
 }
@@ -0,0 +1,9 @@
+-- FEE_COMMAND and FEE_TRANSACTION ids moved from IDENTITY to pooled sequences so that
+-- inserts can be batched. hbm2ddl creates the sequences, this script aligns them with
+-- the rows that already exist. The increments must match the allocationSize on the entities.
+
+CREATE SEQUENCE IF NOT EXISTS FEE_COMMAND_SEQ START 1 INCREMENT 10;
+CREATE SEQUENCE IF NOT EXISTS FEE_TRANSACTION_SEQ START 1 INCREMENT 50;
+
+SELECT setval('FEE_COMMAND_SEQ', (SELECT COALESCE(MAX(ID), 0) + 10 FROM FEE_COMMAND));
+SELECT setval('FEE_TRANSACTION_SEQ', (SELECT COALESCE(MAX(ID), 0) + 50 FROM FEE_TRANSACTION));
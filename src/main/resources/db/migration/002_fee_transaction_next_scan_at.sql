@@ -0,0 +1,8 @@
+-- Scanning is driven by NEXT_SCAN_AT instead of re-reading every FEE_CHARGING row on each tick.
+-- Transactions already in FEE_CHARGING become due immediately.
+
+ALTER TABLE FEE_TRANSACTION ADD COLUMN IF NOT EXISTS NEXT_SCAN_AT TIMESTAMP;
+
+CREATE INDEX IF NOT EXISTS IDX_FEE_TRANSACTION_STATUS_NEXT_SCAN_AT ON FEE_TRANSACTION (STATUS, NEXT_SCAN_AT);
+
+UPDATE FEE_TRANSACTION SET NEXT_SCAN_AT = NOW() WHERE STATUS = 'FEE_CHARGING' AND NEXT_SCAN_AT IS NULL;
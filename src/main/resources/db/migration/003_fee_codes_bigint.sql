@@ -0,0 +1,13 @@
+-- Command and transaction codes are Snowflake ids, stored as BIGINT instead of their decimal text.
+-- ALTER COLUMN TYPE rewrites both tables, run it in a maintenance window on large tables.
+-- TRANSACTION_CODE is not looked up by any query so it gets no index of its own.
+
+ALTER TABLE FEE_COMMAND ALTER COLUMN COMMAND_CODE TYPE BIGINT USING COMMAND_CODE::BIGINT;
+
+ALTER TABLE FEE_TRANSACTION ALTER COLUMN COMMAND_CODE TYPE BIGINT USING COMMAND_CODE::BIGINT;
+
+ALTER TABLE FEE_TRANSACTION ALTER COLUMN TRANSACTION_CODE TYPE BIGINT USING TRANSACTION_CODE::BIGINT;
+
+CREATE UNIQUE INDEX IF NOT EXISTS IDX_FEE_COMMAND_COMMAND_CODE ON FEE_COMMAND (COMMAND_CODE);
+
+CREATE INDEX IF NOT EXISTS IDX_FEE_TRANSACTION_COMMAND_CODE_STATUS ON FEE_TRANSACTION (COMMAND_CODE, STATUS);